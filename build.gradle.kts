@@ -43,6 +43,31 @@ java {
   targetCompatibility = JavaVersion.VERSION_1_8
 }
 
+// classes overriding their java 8 counterparts on newer runtimes, packaged into
+// META-INF/versions/21 of the multi-release jar. They need a java 21 toolchain, so
+// they are only built with -Pjava21, a plain build gives a java 8 only jar.
+if (project.hasProperty("java21")) {
+  val java21: SourceSet = sourceSets.create("java21") {
+    java.srcDir("src/main/java21")
+    compileClasspath += sourceSets.main.get().output
+  }
+
+  configurations[java21.compileClasspathConfigurationName].extendsFrom(configurations.implementation.get())
+
+  tasks.named<JavaCompile>(java21.compileJavaTaskName) {
+    javaCompiler.set(javaToolchains.compilerFor {
+      languageVersion.set(JavaLanguageVersion.of(21))
+    })
+    options.release.set(21)
+  }
+
+  tasks.withType<Jar> {
+    into("META-INF/versions/21") {
+      from(java21.output)
+    }
+  }
+}
+
 tasks.withType<Jar> {
   duplicatesStrategy = DuplicatesStrategy.INCLUDE
   manifest {
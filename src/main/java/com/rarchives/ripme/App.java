@@ -5,6 +5,7 @@ import com.rarchives.ripme.ui.History;
 import com.rarchives.ripme.ui.HistoryEntry;
 import com.rarchives.ripme.ui.MainWindow;
 import com.rarchives.ripme.ui.UpdateUtils;
+import com.rarchives.ripme.utils.Bandwidth;
 import com.rarchives.ripme.utils.Proxy;
 import com.rarchives.ripme.utils.RipUtils;
 import com.rarchives.ripme.utils.Utils;
@@ -161,6 +162,18 @@ public class App {
             Utils.setConfigInteger("threads.size", Integer.parseInt(cl.getOptionValue('t')));
         }
 
+        //Bandwidth limits: <KB/s> for all downloads, <domain>=<KB/s> for one site
+        if (cl.hasOption('b')) {
+            for (String limit : cl.getOptionValue('b').split(",")) {
+                String[] parts = limit.trim().split("=");
+                if (parts.length == 2) {
+                    Bandwidth.setLimit(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+                } else {
+                    Bandwidth.setLimit(Integer.parseInt(parts[0].trim()));
+                }
+            }
+        }
+
         //Ignore 404
         if (cl.hasOption('4')) {
             Utils.setConfigBoolean("errors.skip404", true);
@@ -316,6 +329,7 @@ public class App {
         opts.addOption("d", "saveorder", false, "Save the order of images in album");
         opts.addOption("D", "nosaveorder", false, "Don't save order of images");
         opts.addOption("4", "skip404", false, "Don't retry after a 404 (not found) error");
+        opts.addOption("b", "bandwidth", true, "Bandwidth limit in KB/s, for a site with <domain>=<KB/s> (comma separated)");
         opts.addOption("l", "ripsdirectory", true, "Rips Directory (Default: ./rips)");
         opts.addOption("n", "no-prop-file", false, "Do not create properties file.");
         opts.addOption("f", "urls-file", true, "Rip URLs from a file.");
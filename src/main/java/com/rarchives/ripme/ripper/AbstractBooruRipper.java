@@ -0,0 +1,222 @@
+package com.rarchives.ripme.ripper;
+
+import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.Utils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ripper for booru sites, reading posts straight from the site's post API.
+ * <p>
+ * Subclasses only describe the API: the URL of a page of posts ({@link #getPostsURL(int, String)})
+ * and how to read file URLs out of it ({@link #parsePosts(URL, String)}). Pages are requested
+ * at the largest size the site allows and loaded ahead in the background while the current
+ * one is handled: up to booru.threads pages at once for page-numbered APIs, or one page ahead
+ * for sites paged by post id (which need the last id of a page to ask for the next one).
+ */
+public abstract class AbstractBooruRipper extends AbstractJSONRipper {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService pageLoader = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "booru-pages-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Deque<Future<JSONObject>> nextPages = new ArrayDeque<>();
+    // Page number of the last page requested
+    private int lastRequestedPage = 0;
+    private boolean noMorePages = false;
+
+    protected AbstractBooruRipper(URL url) throws IOException {
+        super(url);
+    }
+
+    /**
+     * A post as read from the API.
+     */
+    protected static class Post {
+        public final String id;
+        public final String fileURL;
+
+        public Post(String id, String fileURL) {
+            this.id = id;
+            this.fileURL = fileURL;
+        }
+    }
+
+    /**
+     * @param page
+     *      Page number, starting at 1.
+     * @param beforeId
+     *      Id of the last post of the previous page, null for the first page.
+     *      Only passed to sites that use {@link #pagesByPostId()}.
+     * @return
+     *      URL of a page with as many posts as the API allows.
+     */
+    protected abstract URL getPostsURL(int page, String beforeId) throws MalformedURLException;
+
+    /**
+     * Reads the posts out of an API response, in the order they should be downloaded.
+     * Posts without a downloadable file get a null fileURL.
+     */
+    protected abstract List<Post> parsePosts(URL pageURL, String body) throws IOException;
+
+    /**
+     * @return
+     *      True if pages are addressed by post id instead of by page number.
+     */
+    protected boolean pagesByPostId() {
+        return false;
+    }
+
+    /**
+     * Sets up a request to the API, to add cookies or a user agent.
+     */
+    protected Http request(URL url) {
+        return Http.url(url).ignoreContentType();
+    }
+
+    @Override
+    protected JSONObject getFirstPage() throws IOException {
+        JSONObject page = loadPage(1, null);
+        lastRequestedPage = 1;
+        if (page.getJSONArray("posts").length() > 0) {
+            requestNextPages(page);
+        }
+        return page;
+    }
+
+    @Override
+    protected boolean hasCheckpointSupport() {
+        return true;
+    }
+
+    @Override
+    protected JSONObject getPageFromCheckpoint(JSONObject page) {
+        lastRequestedPage = page.getInt("page");
+        if (page.getJSONArray("posts").length() > 0) {
+            requestNextPages(page);
+        }
+        return page;
+    }
+
+    @Override
+    protected JSONObject getNextPage(JSONObject page) throws IOException {
+        Future<JSONObject> next = nextPages.poll();
+        if (next == null || isStopped()) {
+            cancelNextPages();
+            throw new IOException("No more pages.");
+        }
+        JSONObject nextPage;
+        try {
+            nextPage = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelNextPages();
+            throw new IOException("Interrupted while loading next page", e);
+        } catch (ExecutionException e) {
+            cancelNextPages();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        if (nextPage.getJSONArray("posts").length() == 0) {
+            cancelNextPages();
+            throw new IOException("No more pages.");
+        }
+        requestNextPages(nextPage);
+        return nextPage;
+    }
+
+    @Override
+    protected List<String> getURLsFromJSON(JSONObject page) {
+        List<String> urls = new ArrayList<>();
+        JSONArray posts = page.getJSONArray("posts");
+        for (int i = 0; i < posts.length(); i++) {
+            String fileURL = posts.getJSONObject(i).optString("file_url", "");
+            if (!fileURL.isEmpty()) {
+                urls.add(fileURL);
+            }
+        }
+        return urls;
+    }
+
+    @Override
+    protected boolean hasNoItems(JSONObject page) {
+        // A page of hidden, deleted or blacklisted posts is not the end of the search
+        return page.getJSONArray("posts").length() == 0;
+    }
+
+    @Override
+    protected void downloadURL(URL url, int index) {
+        addURLToDownload(url, getPrefix(index));
+    }
+
+    /**
+     * Starts loading the pages after this one. Paging ends at the first empty page, sites
+     * can return short pages when they hide some posts.
+     */
+    private void requestNextPages(JSONObject page) {
+        if (noMorePages) {
+            return;
+        }
+        JSONArray posts = page.getJSONArray("posts");
+        if (pagesByPostId()) {
+            String beforeId = posts.getJSONObject(posts.length() - 1).getString("id");
+            int pageNumber = page.getInt("page") + 1;
+            nextPages.add(pageLoader.submit(() -> loadPage(pageNumber, beforeId)));
+            return;
+        }
+        int threads = Math.max(1, Utils.getConfigInteger("booru.threads", 3));
+        while (nextPages.size() < threads) {
+            int pageNumber = ++lastRequestedPage;
+            nextPages.add(pageLoader.submit(() -> loadPage(pageNumber, null)));
+        }
+    }
+
+    private void cancelNextPages() {
+        noMorePages = true;
+        for (Future<JSONObject> next : nextPages) {
+            next.cancel(true);
+        }
+        nextPages.clear();
+    }
+
+    /**
+     * Loads a page of posts into the JSON page handed around by {@link AbstractJSONRipper}:
+     * { "page": 1, "posts": [ { "id": "...", "file_url": "..." }, ... ] }
+     */
+    private JSONObject loadPage(int pageNumber, String beforeId) throws IOException {
+        URL pageURL = getPostsURL(pageNumber, beforeId);
+        LOGGER.info("Retrieving {}", pageURL);
+        String body = request(pageURL).response().body();
+        JSONArray posts = new JSONArray();
+        for (Post post : parsePosts(pageURL, body)) {
+            JSONObject json = new JSONObject();
+            json.put("id", post.id);
+            if (post.fileURL != null) {
+                json.put("file_url", post.fileURL);
+            }
+            posts.put(json);
+        }
+        JSONObject page = new JSONObject();
+        page.put("page", pageNumber);
+        page.put("posts", posts);
+        return page;
+    }
+}
@@ -3,6 +3,8 @@ package com.rarchives.ripme.ripper;
 import com.rarchives.ripme.ui.MainWindow;
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
 import org.jsoup.nodes.Document;
 
@@ -20,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simplified ripper, designed for ripping from sites by parsing HTML.
@@ -42,6 +45,18 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
         return null;
     }
     protected abstract List<String> getURLsFromPage(Document page) throws IOException;
+    /**
+     * Emits the URLs found on a page to the sink one at a time, so their downloads start right away.
+     * Defaults to {@link #getURLsFromPage(Document)}; rippers with huge or nested listings
+     * override this to avoid building the whole list first.
+     */
+    protected void emitURLsFromPage(Document page, ItemSink sink) throws IOException {
+        for (String imageURL : getURLsFromPage(page)) {
+            if (!sink.accept(imageURL)) {
+                break;
+            }
+        }
+    }
     protected List<String> getDescriptionsFromPage(Document doc) throws IOException {
         throw new IOException("getDescriptionsFromPage not implemented"); // Do I do this or make an abstract function?
     }
@@ -91,11 +106,26 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
 
     @Override
     public void rip() throws IOException {
-        int index = 0;
+        AtomicInteger index = new AtomicInteger(0);
         int textindex = 0;
-        LOGGER.info("Retrieving " + this.url);
-        sendUpdate(STATUS.LOADING_RESOURCE, this.url.toExternalForm());
-        Document doc = getFirstPage();
+        Document doc;
+        RipCheckpoint resumeFrom = startCheckpoint();
+        RipEvents.Span fetch = RipEvents.pageFetch(this, this.url);
+        try {
+            if (resumeFrom != null && resumeFrom.getPage() != null) {
+                LOGGER.info("Retrieving {}", resumeFrom.getPage());
+                sendUpdate(STATUS.LOADING_RESOURCE, resumeFrom.getPage());
+                index.set(resumeFrom.getIndex());
+                doc = getPageFromCheckpoint(resumeFrom.getPage());
+            } else {
+                LOGGER.info("Retrieving " + this.url);
+                sendUpdate(STATUS.LOADING_RESOURCE, this.url.toExternalForm());
+                doc = getFirstPage();
+            }
+            fetch.setURL(pageURL(doc));
+        } finally {
+            fetch.end();
+        }
 
         if (hasQueueSupport() && pageContainsAlbums(this.url)) {
             List<String> urls = getAlbumsToQueue(doc);
@@ -117,33 +147,42 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
             }
             doclocation.add(doc.location());
 
+            if (checkpoint != null && finishResolving()) {
+                checkpoint.startPage(doc.location(), index.get(), itemsPending);
+            }
+
             if (alreadyDownloadedUrls >= Utils.getConfigInteger("history.end_rip_after_already_seen", 1000000000) && !isThisATest()) {
                 sendUpdate(STATUS.DOWNLOAD_COMPLETE_HISTORY, "Already seen the last " + alreadyDownloadedUrls + " images ending rip");
                 break;
             }
-            List<String> imageURLs = getURLsFromPage(doc);
             // If hasASAPRipping() returns true then the ripper will handle downloading the files
             // if not it's done in the following block of code
             if (!hasASAPRipping()) {
-                // Remove all but 1 image
-                if (isThisATest()) {
-                    while (imageURLs.size() > 1) {
-                        imageURLs.remove(1);
-                    }
+                int indexBeforePage = index.get();
+                RipEvents.Span parse = RipEvents.pageParse(this, pageURL(doc));
+                try {
+                    emitURLsFromPage(doc, imageURL -> {
+                        // Queueing the item is not parsing
+                        parse.pause();
+                        try {
+                            int imageIndex = index.incrementAndGet();
+                            LOGGER.debug("Found image url #{}: {}", imageIndex, imageURL);
+                            downloadURL(new URL(imageURL), imageIndex);
+                        } finally {
+                            parse.resume();
+                        }
+                        // Only rip one image if this is a test
+                        return !isStopped() && !isThisATest();
+                    });
+                } finally {
+                    parse.end(index.get() - indexBeforePage);
                 }
 
-                if (imageURLs.isEmpty()) {
+                if (index.get() == indexBeforePage) {
                     throw new IOException("No images found at " + doc.location());
                 }
-
-                for (String imageURL : imageURLs) {
-                    index += 1;
-                    LOGGER.debug("Found image url #" + index + ": " + imageURL);
-                    downloadURL(new URL(imageURL), index);
-                    if (isStopped() || isThisATest()) {
-                        break;
-                    }
-                }
+            } else {
+                getURLsFromPage(doc);
             }
             if (hasDescriptionSupport() && Utils.getConfigBoolean("descriptions.save", false)) {
                 LOGGER.debug("Fetching description(s) from " + doc.location());
@@ -160,7 +199,7 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
                         if (tempDesc != null) {
                             if (Utils.getConfigBoolean("file.overwrite", false) || !(Files.exists(
                                     workingDir
-                                            .relativize(Paths.get(getPrefix(index)))
+                                            .relativize(Paths.get(getPrefix(index.get())))
                                             .relativize((tempDesc.length > 1 ? Paths.get(tempDesc[1]) : Paths.get(String.valueOf(new URL(textURL)))))
                                             .relativize(Paths.get(".txt"))
                             ))) {
@@ -180,12 +219,18 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
                 break;
             }
 
+            fetch = RipEvents.pageFetch(this, this.url);
             try {
                 sendUpdate(STATUS.LOADING_RESOURCE, "next page");
                 doc = getNextPage(doc);
+                if (doc != null) {
+                    fetch.setURL(pageURL(doc));
+                }
             } catch (IOException e) {
                 LOGGER.info("Can't get next page: " + e.getMessage());
                 break;
+            } finally {
+                fetch.end();
             }
         }
 
@@ -195,6 +240,36 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
             getThreadPool().waitForThreads();
         }
         waitForThreads();
+        finishCheckpoint();
+    }
+
+    /**
+     * Loads the page a stopped rip was on, for rippers with {@link #hasCheckpointSupport()}.
+     * @param location
+     *      URL of the page (its Document.location()).
+     */
+    protected Document getPageFromCheckpoint(String location) throws IOException {
+        return Http.url(location).get();
+    }
+
+    @Override
+    Map<URL, Path> getPendingItems() {
+        return itemsPending;
+    }
+
+    /**
+     * @return
+     *      The URL a page was loaded from, or the URL of the rip if it has none that parses.
+     */
+    private URL pageURL(Document page) {
+        if (page == null) {
+            return this.url;
+        }
+        try {
+            return new URL(page.location());
+        } catch (MalformedURLException e) {
+            return this.url;
+        }
     }
     
     /**
@@ -331,14 +406,8 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
         }
         else {
             itemsPending.put(url, saveAs);
-            DownloadFileThread dft = new DownloadFileThread(url,  saveAs,  this, getFileExtFromMIME);
-            if (referrer != null) {
-                dft.setReferrer(referrer);
-            }
-            if (cookies != null) {
-                dft.setCookies(cookies);
-            }
-            threadPool.addThread(dft);
+            checkpointItems();
+            startDownload(url, saveAs, referrer, cookies, getFileExtFromMIME);
         }
 
         return true;
@@ -375,6 +444,7 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
             RipStatusMessage msg = new RipStatusMessage(STATUS.DOWNLOAD_COMPLETE, path);
             itemsPending.remove(url);
             itemsCompleted.put(url, saveAs);
+            checkpointItems();
             observer.update(this, msg);
 
             checkIfComplete();
@@ -393,6 +463,7 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
         }
         itemsPending.remove(url);
         itemsErrored.put(url, reason);
+        checkpointItems();
         observer.update(this, new RipStatusMessage(STATUS.DOWNLOAD_ERRORED, url + " : " + reason));
 
         checkIfComplete();
@@ -410,6 +481,7 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
 
         itemsPending.remove(url);
         itemsCompleted.put(url, file);
+        checkpointItems();
         observer.update(this, new RipStatusMessage(STATUS.DOWNLOAD_WARN, url + " already saved as " + file));
 
         checkIfComplete();
@@ -451,6 +523,7 @@ public abstract class AbstractHTMLRipper extends AbstractRipper {
         if (!Files.exists(wd)) {
             LOGGER.info("[+] Creating directory: " + Utils.removeCWD(wd));
             Files.createDirectory(wd);
+            DirectoryIndex.fileAdded(wd);
         }
         this.workingDir = wd;
         LOGGER.debug("Set working directory to: " + this.workingDir);
@@ -2,6 +2,7 @@ package com.rarchives.ripme.ripper;
 
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.DirectoryIndex;
 import com.rarchives.ripme.utils.Utils;
 import org.json.JSONObject;
 
@@ -17,6 +18,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simplified ripper, designed for ripping from sites by parsing JSON.
@@ -40,6 +42,18 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
         throw new IOException("getNextPage not implemented");
     }
     protected abstract List<String> getURLsFromJSON(JSONObject json);
+    /**
+     * Emits the URLs found in a JSON page to the sink one at a time, so their downloads start right away.
+     * Defaults to {@link #getURLsFromJSON(JSONObject)}; rippers with huge or nested listings
+     * override this to avoid building the whole list first.
+     */
+    protected void emitURLsFromJSON(JSONObject json, ItemSink sink) throws IOException {
+        for (String imageURL : getURLsFromJSON(json)) {
+            if (!sink.accept(imageURL)) {
+                break;
+            }
+        }
+    }
     protected abstract void downloadURL(URL url, int index) throws IOException;
     private DownloadThreadPool getThreadPool() {
         return null;
@@ -61,50 +75,74 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
 
     @Override
     public void rip() throws IOException {
-        int index = 0;
-        LOGGER.info("Retrieving " + this.url);
-        sendUpdate(STATUS.LOADING_RESOURCE, this.url.toExternalForm());
-        JSONObject json = getFirstPage();
+        AtomicInteger index = new AtomicInteger(0);
+        JSONObject json;
+        RipCheckpoint resumeFrom = startCheckpoint();
+        RipEvents.Span fetch = RipEvents.pageFetch(this, this.url);
+        try {
+            if (resumeFrom != null && resumeFrom.getJSONPage() != null) {
+                index.set(resumeFrom.getIndex());
+                json = getPageFromCheckpoint(resumeFrom.getJSONPage());
+            } else {
+                LOGGER.info("Retrieving " + this.url);
+                sendUpdate(STATUS.LOADING_RESOURCE, this.url.toExternalForm());
+                json = getFirstPage();
+            }
+        } finally {
+            fetch.end();
+        }
 
         while (json != null) {
-            List<String> imageURLs = getURLsFromJSON(json);
-            
+            if (checkpoint != null && finishResolving()) {
+                checkpoint.startPage(json, index.get(), itemsPending);
+            }
+
             if (alreadyDownloadedUrls >= Utils.getConfigInteger("history.end_rip_after_already_seen", 1000000000) && !isThisATest()) {
                  sendUpdate(STATUS.DOWNLOAD_COMPLETE, "Already seen the last " + alreadyDownloadedUrls + " images ending rip");
                  break;
             }
-            
-            // Remove all but 1 image
-            if (isThisATest()) {
-                while (imageURLs.size() > 1) {
-                    imageURLs.remove(1);
-                }
-            }
 
-            if (imageURLs.isEmpty() && !hasASAPRipping()) {
-                throw new IOException("No images found at " + this.url);
+            int indexBeforePage = index.get();
+            // JSON rippers build their page requests themselves, the URL of the rip is all there is
+            RipEvents.Span parse = RipEvents.pageParse(this, this.url);
+            try {
+                emitURLsFromJSON(json, imageURL -> {
+                    if (isStopped()) {
+                        return false;
+                    }
+                    // Queueing the item is not parsing
+                    parse.pause();
+                    try {
+                        int imageIndex = index.incrementAndGet();
+                        LOGGER.debug("Found image url #{}: {}", imageIndex, imageURL);
+                        downloadURL(new URL(imageURL), imageIndex);
+                    } finally {
+                        parse.resume();
+                    }
+                    // Only rip one image if this is a test
+                    return !isThisATest();
+                });
+            } finally {
+                parse.end(index.get() - indexBeforePage);
             }
 
-            for (String imageURL : imageURLs) {
-                if (isStopped()) {
-                    break;
-                }
-                
-                index += 1;
-                LOGGER.debug("Found image url #" + index+ ": " + imageURL);
-                downloadURL(new URL(imageURL), index);
+            if (index.get() == indexBeforePage && !hasASAPRipping() && !isStopped() && hasNoItems(json)) {
+                throw new IOException("No images found at " + this.url);
             }
 
             if (isStopped() || isThisATest()) {
                 break;
             }
 
+            fetch = RipEvents.pageFetch(this, this.url);
             try {
                 sendUpdate(STATUS.LOADING_RESOURCE, "next page");
                 json = getNextPage(json);
             } catch (IOException e) {
                 LOGGER.info("Can't get next page: " + e.getMessage());
                 break;
+            } finally {
+                fetch.end();
             }
         }
 
@@ -114,6 +152,33 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
             getThreadPool().waitForThreads();
         }
         waitForThreads();
+        finishCheckpoint();
+    }
+
+    /**
+     * Called for a page that gave no URLs, which ends the rip with an error when the
+     * page really is empty.
+     * @return
+     *      False if the page had items, but none that can be downloaded.
+     */
+    protected boolean hasNoItems(JSONObject page) {
+        return true;
+    }
+
+    /**
+     * Picks up from the page a stopped rip was on, for rippers with {@link #hasCheckpointSupport()}.
+     * @param page
+     *      The page, as it was returned by getFirstPage() or getNextPage().
+     * @return
+     *      The page to continue from.
+     */
+    protected JSONObject getPageFromCheckpoint(JSONObject page) throws IOException {
+        return page;
+    }
+
+    @Override
+    Map<URL, Path> getPendingItems() {
+        return itemsPending;
     }
 
     protected String getPrefix(int index) {
@@ -172,14 +237,8 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
         }
         else {
             itemsPending.put(url, saveAs);
-            DownloadFileThread dft = new DownloadFileThread(url,  saveAs,  this, getFileExtFromMIME);
-            if (referrer != null) {
-                dft.setReferrer(referrer);
-            }
-            if (cookies != null) {
-                dft.setCookies(cookies);
-            }
-            threadPool.addThread(dft);
+            checkpointItems();
+            startDownload(url, saveAs, referrer, cookies, getFileExtFromMIME);
         }
 
         return true;
@@ -216,6 +275,7 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
             RipStatusMessage msg = new RipStatusMessage(STATUS.DOWNLOAD_COMPLETE, path);
             itemsPending.remove(url);
             itemsCompleted.put(url, saveAs);
+            checkpointItems();
             observer.update(this, msg);
 
             checkIfComplete();
@@ -234,6 +294,7 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
         }
         itemsPending.remove(url);
         itemsErrored.put(url, reason);
+        checkpointItems();
         observer.update(this, new RipStatusMessage(STATUS.DOWNLOAD_ERRORED, url + " : " + reason));
 
         checkIfComplete();
@@ -251,6 +312,7 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
 
         itemsPending.remove(url);
         itemsCompleted.put(url, file);
+        checkpointItems();
         observer.update(this, new RipStatusMessage(STATUS.DOWNLOAD_WARN, url + " already saved as " + file));
 
         checkIfComplete();
@@ -292,6 +354,7 @@ public abstract class AbstractJSONRipper extends AbstractRipper {
         if (!Files.exists(wd)) {
             LOGGER.info("[+] Creating directory: " + Utils.removeCWD(wd));
             Files.createDirectory(wd);
+            DirectoryIndex.fileAdded(wd);
         }
         this.workingDir = wd;
         LOGGER.debug("Set working directory to: " + this.workingDir);
@@ -5,6 +5,12 @@ import com.rarchives.ripme.ui.RipStatusComplete;
 import com.rarchives.ripme.ui.RipStatusHandler;
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.Bandwidth;
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.HostConcurrency;
+import com.rarchives.ripme.utils.Mirrors;
+import com.rarchives.ripme.utils.ProxyRouter;
+import com.rarchives.ripme.utils.RipLog;
 import com.rarchives.ripme.utils.Utils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,6 +28,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
@@ -42,9 +49,13 @@ public abstract class AbstractRipper
     protected URL url;
     protected Path workingDir;
     DownloadThreadPool threadPool;
+    private volatile AsyncDownloadEngine asyncEngine = null;
+    private ResolveLane resolveLane = null;
+    volatile RipCheckpoint checkpoint = null;
     RipStatusHandler observer = null;
 
     private boolean completed = true;
+    private boolean ripLogStarted = false;
 
     public abstract void rip() throws IOException;
     public abstract String getHost();
@@ -58,6 +69,10 @@ public abstract class AbstractRipper
     public void stop() {
         LOGGER.trace("stop()");
         shouldStop.set(true);
+        RipCheckpoint currentCheckpoint = checkpoint;
+        if (currentCheckpoint != null) {
+            currentCheckpoint.save(getPendingItems());
+        }
     }
     public boolean isStopped() {
         return shouldStop.get();
@@ -121,6 +136,17 @@ public abstract class AbstractRipper
      *      Returns false if not yet downloaded.
      */
     protected boolean hasDownloadedURL(String url) {
+        RipEvents.Span lookup = RipEvents.historyLookup(this, url);
+        boolean found = false;
+        try {
+            found = isInHistory(url);
+        } finally {
+            lookup.end(found ? 1 : 0);
+        }
+        return found;
+    }
+
+    private boolean isInHistory(String url) {
         Path file = Paths.get(URLHistoryFile);
         url = normalizeUrl(url);
 
@@ -166,17 +192,13 @@ public abstract class AbstractRipper
      */
     public void setup() throws IOException {
         setWorkingDir(this.url);
-        // we do not care if the rollingfileappender is active, just change the logfile in case
-        // TODO this does not work - not even with
-        //                     .withFileName("${sys:logFilename}")
-        // in Utils.java, RollingFileAppender.
-//        System.setProperty("logFilename", this.workingDir + "/log.txt");
-//        LOGGER.debug("Changing log file to '{}/log.txt'", this.workingDir);
-//        LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
-//        ctx.reconfigure();
-//        ctx.updateLoggers();
+        // Files may have changed since the last rip into this directory
+        DirectoryIndex.invalidate(this.workingDir);
+        // Logs of this rip also go to log.txt in its directory, see RipLog
+        startRipLog();
 
-        this.threadPool = new DownloadThreadPool();
+        // Sized for the busiest host, HostConcurrency keeps each host to its own limit
+        this.threadPool = new DownloadThreadPool("Main", HostConcurrency.getPoolSize());
     }
 
     public void setObserver(RipStatusHandler obs) {
@@ -284,7 +306,7 @@ public abstract class AbstractRipper
             }
         }
         // Don't re-add the url if it was downloaded in a previous rip
-        if (Utils.getConfigBoolean("remember.url_history", true) && !isThisATest()) {
+        if (Utils.getConfigBoolean("remember.url_history", true) && !isThisATest() && !isOnResumedPage()) {
             if (hasDownloadedURL(url.toExternalForm())) {
                 sendUpdate(STATUS.DOWNLOAD_WARN, "Already downloaded " + url.toExternalForm());
                 alreadyDownloadedUrls += 1;
@@ -297,7 +319,7 @@ public abstract class AbstractRipper
             LOGGER.debug("Ripper has been stopped");
             return false;
         }
-        LOGGER.debug("url: " + url + ", prefix: " + prefix + ", subdirectory" + subdirectory + ", referrer: " + referrer + ", cookies: " + cookies + ", fileName: " + fileName);
+        LOGGER.debug("url: {}, prefix: {}, subdirectory: {}, referrer: {}, cookies: {}, fileName: {}", url, prefix, subdirectory, referrer, cookies, fileName);
         String saveAs = getFileName(url, fileName, extension);
         Path saveFileAs;
         if (subdirectory.equals("")) {
@@ -313,14 +335,15 @@ public abstract class AbstractRipper
                 , prefix
                 , saveAs
                 );
-        LOGGER.debug("Downloading " + url + " to " + saveFileAs);
+        LOGGER.debug("Downloading {} to {}", url, saveFileAs);
         try {
-            if (!Files.exists(saveFileAs.getParent())) {
-                LOGGER.info("[+] Creating directory: " + Utils.removeCWD(saveFileAs.getParent()));
+            if (!DirectoryIndex.exists(saveFileAs.getParent())) {
+                LOGGER.info("[+] Creating directory: {}", () -> Utils.removeCWD(saveFileAs.getParent()));
                 Files.createDirectory(saveFileAs.getParent());
+                DirectoryIndex.fileAdded(saveFileAs.getParent());
             }
             if (Utils.getConfigBoolean("remember.url_history", true) && !isThisATest()) {
-                LOGGER.info("Writing " + url.toExternalForm() + " to file");
+                LOGGER.info("Writing {} to file", url);
                 writeDownloadedURL(url.toExternalForm() + "\n");
             }
         } catch (IOException e) {
@@ -369,6 +392,160 @@ public abstract class AbstractRipper
         return addURLToDownload(url, prefix, "");
     }
 
+    /**
+     * Starts downloading a file queued through addURLToDownload, either on the thread pool
+     * or on the asynchronous download engine (see {@link #useAsyncDownloads()}).
+     */
+    void startDownload(URL url, Path saveAs, String referrer, Map<String, String> cookies, Boolean getFileExtFromMIME) {
+        // The async engine does not sniff MIME types, resume, report byte progress, hedge across mirrors,
+        // shape bandwidth or follow proxy routes
+        if (useAsyncDownloads() && AsyncDownloadEngine.isAvailable() && !getFileExtFromMIME
+                && !tryResumeDownload() && !useByteProgessBar() && !isThisATest() && !Mirrors.hasAlternates(url)
+                && !Bandwidth.isLimited(url) && !ProxyRouter.isRouted(url)) {
+            if (getAsyncEngine().download(url, saveAs, referrer, cookies)) {
+                return;
+            }
+        }
+        DownloadFileThread dft = new DownloadFileThread(url, saveAs, this, getFileExtFromMIME);
+        if (referrer != null) {
+            dft.setReferrer(referrer);
+        }
+        if (cookies != null) {
+            dft.setCookies(cookies);
+        }
+        threadPool.addThread(dft);
+    }
+
+    /**
+     * @return
+     *      True if the ripper can continue from the page a stopped rip was on
+     *      (see {@link RipCheckpoint}): its pages can be loaded again from their
+     *      URL (HTML) or kept as they are (JSON), and paging only depends on the page.
+     */
+    protected boolean hasCheckpointSupport() {
+        return false;
+    }
+
+    /**
+     * @return
+     *      Downloads that are queued or running, with the path they are saved to.
+     */
+    Map<URL, Path> getPendingItems() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Sets up the checkpoint of this rip.
+     * @return
+     *      The checkpoint left by a stopped rip of the same URL, or null to start from the first page.
+     */
+    RipCheckpoint startCheckpoint() {
+        if (!hasCheckpointSupport() || isThisATest()) {
+            return null;
+        }
+        RipCheckpoint previous = RipCheckpoint.load(workingDir, url);
+        checkpoint = previous != null ? previous : RipCheckpoint.start(workingDir, url);
+        if (previous != null) {
+            LOGGER.info("Resuming {} at item {}", url, previous.getIndex());
+            // Files of unfinished downloads may be cut short, fetch them again
+            for (Map.Entry<URL, Path> item : previous.getPending().entrySet()) {
+                try {
+                    if (Files.deleteIfExists(item.getValue())) {
+                        DirectoryIndex.fileRemoved(item.getValue());
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to remove unfinished download {}", item.getValue());
+                }
+                addURLToDownload(item.getKey(), item.getValue());
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * @return
+     *      True while resuming a stopped rip on the page it was on, see {@link RipCheckpoint#isOnResumedPage()}.
+     */
+    private boolean isOnResumedPage() {
+        RipCheckpoint currentCheckpoint = checkpoint;
+        return currentCheckpoint != null && currentCheckpoint.isOnResumedPage();
+    }
+
+    /**
+     * Updates the checkpoint of this rip after a download was queued or finished.
+     */
+    void checkpointItems() {
+        RipCheckpoint currentCheckpoint = checkpoint;
+        if (currentCheckpoint != null) {
+            currentCheckpoint.itemsChanged(getPendingItems());
+        }
+    }
+
+    /**
+     * Ends the checkpoint of this rip: a rip that ran to the end leaves nothing to resume.
+     */
+    void finishCheckpoint() {
+        RipCheckpoint currentCheckpoint = checkpoint;
+        if (currentCheckpoint != null && !isStopped()) {
+            currentCheckpoint.delete();
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Queues an intermediate page (e.g. an image page) on the resolve lane. The resolver
+     * finds the file(s) on it and queues them with addURLToDownload; see {@link ResolveLane}.
+     * Blocks while the lane's queue is full.
+     * @param page
+     *      URL of the page.
+     * @param resolver
+     *      Loads the page and queues its files.
+     */
+    protected void resolvePage(URL page, PageResolver resolver) {
+        ResolveLane lane;
+        synchronized (this) {
+            if (resolveLane == null) {
+                resolveLane = new ResolveLane(this);
+            }
+            lane = resolveLane;
+        }
+        lane.submit(page, resolver);
+    }
+
+    /**
+     * Waits until the pages queued on the resolve lane so far are resolved, before the
+     * checkpoint moves past the page that queued them: their files are then pending in the
+     * checkpoint (or downloaded) instead of lost on a stop.
+     * @return
+     *      False if the rip stopped, the lane skips the pages left then and the checkpoint
+     *      must stay where it is.
+     */
+    boolean finishResolving() {
+        ResolveLane lane;
+        synchronized (this) {
+            lane = resolveLane;
+        }
+        if (lane != null) {
+            lane.drain();
+        }
+        return !isStopped();
+    }
+
+    /**
+     * @return
+     *      Minimum time between two page requests to the same host on the resolve lane, in ms.
+     */
+    protected long getResolveInterval() {
+        return 1000 / Math.max(1, Utils.getConfigInteger("resolve.requests_per_second", 2));
+    }
+
+    private synchronized AsyncDownloadEngine getAsyncEngine() {
+        if (asyncEngine == null) {
+            asyncEngine = new AsyncDownloadEngine(this);
+        }
+        return asyncEngine;
+    }
+
     public static String getFileName(URL url, String fileName, String extension) {
         String saveAs;
         if (fileName != null) {
@@ -404,8 +581,19 @@ public abstract class AbstractRipper
      */
     protected void waitForThreads() {
         LOGGER.debug("Waiting for threads to finish");
+        // Pages still being resolved can queue more downloads
+        ResolveLane lane;
+        synchronized (this) {
+            lane = resolveLane;
+        }
+        if (lane != null) {
+            lane.waitForThreads();
+        }
         completed = false;
         threadPool.waitForThreads();
+        if (asyncEngine != null) {
+            asyncEngine.awaitCompletion();
+        }
         checkIfComplete();
     }
 
@@ -467,12 +655,7 @@ public abstract class AbstractRipper
             RipStatusMessage msg = new RipStatusMessage(STATUS.RIP_COMPLETE, rsc);
             observer.update(this, msg);
 
-            // we do not care if the rollingfileappender is active, just change the logfile in case
-            // TODO - does not work.
-//            System.setProperty("logFilename", "ripme.log");
-//            LOGGER.debug("Changing log file back to 'ripme.log'");
-//            LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
-//            ctx.reconfigure();
+            stopRipLog();
 
             if (Utils.getConfigBoolean("urls_only.save", false)) {
                 String urlFile = this.workingDir + "/urls.txt";
@@ -597,18 +780,36 @@ public abstract class AbstractRipper
      * Rips the album when the thread is invoked.
      */
     public void run() {
+        String previousLog = RipLog.tag(workingDir);
         try {
             rip();
         } catch (HttpStatusException e) {
             LOGGER.error("Got exception while running ripper:", e);
             waitForThreads();
             sendUpdate(STATUS.RIP_ERRORED, "HTTP status code " + e.getStatusCode() + " for URL " + e.getUrl());
+            stopRipLog();
         } catch (Exception e) {
             LOGGER.error("Got exception while running ripper:", e);
             waitForThreads();
             sendUpdate(STATUS.RIP_ERRORED, e.getMessage());
+            stopRipLog();
         } finally {
             cleanup();
+            RipLog.restore(previousLog);
+        }
+    }
+
+    private synchronized void startRipLog() {
+        if (!ripLogStarted) {
+            ripLogStarted = true;
+            RipLog.start(workingDir);
+        }
+    }
+
+    private synchronized void stopRipLog() {
+        if (ripLogStarted) {
+            ripLogStarted = false;
+            RipLog.stop(workingDir);
         }
     }
     /**
@@ -618,10 +819,13 @@ public abstract class AbstractRipper
         try (Stream<Path> entries = Files.list(this.workingDir)) {
             if (!entries.findFirst().isPresent()) {
                 Files.delete(this.workingDir);
+                DirectoryIndex.fileRemoved(this.workingDir);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        // The listings of a finished rip are of no use to the next one
+        DirectoryIndex.invalidate(this.workingDir);
     }
 
     /**
@@ -663,4 +867,9 @@ public abstract class AbstractRipper
     protected boolean useByteProgessBar() { return false;}
     // If true ripme will try to resume a broken download for this ripper
     protected boolean tryResumeDownload() { return false;}
+    // If true files are downloaded by the non-blocking AsyncDownloadEngine when the runtime supports it.
+    // Enabled for all rippers with download.async = true, or for one host with download.async.<host> = true
+    protected boolean useAsyncDownloads() {
+        return Utils.getConfigBoolean("download.async." + getHost(), Utils.getConfigBoolean("download.async", false));
+    }
 }
\ No newline at end of file
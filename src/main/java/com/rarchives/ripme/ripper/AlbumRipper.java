@@ -2,6 +2,7 @@ package com.rarchives.ripme.ripper;
 
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.DirectoryIndex;
 import com.rarchives.ripme.utils.Utils;
 
 import java.io.IOException;
@@ -65,7 +66,9 @@ public abstract class AlbumRipper extends AbstractRipper {
                   || itemsCompleted.containsKey(url)
                   || itemsErrored.containsKey(url) )) {
             // Item is already downloaded/downloading, skip it.
-            LOGGER.info("[!] Skipping " + url + " -- already attempted: " + Utils.removeCWD(saveAs));
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("[!] Skipping {} -- already attempted: {}", url, Utils.removeCWD(saveAs));
+            }
             return false;
         }
         if (Utils.getConfigBoolean("urls_only.save", false)) {
@@ -81,14 +84,7 @@ public abstract class AlbumRipper extends AbstractRipper {
         }
         else {
             itemsPending.put(url, saveAs);
-            DownloadFileThread dft = new DownloadFileThread(url,  saveAs,  this, getFileExtFromMIME);
-            if (referrer != null) {
-                dft.setReferrer(referrer);
-            }
-            if (cookies != null) {
-                dft.setCookies(cookies);
-            }
-            threadPool.addThread(dft);
+            startDownload(url, saveAs, referrer, cookies, getFileExtFromMIME);
         }
 
         return true;
@@ -204,6 +200,7 @@ public abstract class AlbumRipper extends AbstractRipper {
         if (!Files.exists(workingDir)) {
             LOGGER.info("[+] Creating directory: " + Utils.removeCWD(this.workingDir));
             Files.createDirectory(workingDir);
+            DirectoryIndex.fileAdded(workingDir);
         }
         LOGGER.debug("Set working directory to: " + this.workingDir);
     }
@@ -0,0 +1,44 @@
+package com.rarchives.ripme.ripper;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Non-blocking download engine, keeping many transfers in flight on a handful of threads.
+ * <p>
+ * This is the java 8 version, which is never available: rippers asking for it fall back
+ * to one {@link DownloadFileThread} per file. The real engine replaces this class in
+ * META-INF/versions/21 of the multi-release jar.
+ */
+final class AsyncDownloadEngine {
+
+    AsyncDownloadEngine(AbstractRipper observer) {
+    }
+
+    /**
+     * @return
+     *      True if this runtime supports asynchronous downloads.
+     */
+    static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Starts downloading a file without blocking on the transfer.
+     * Notifies the observer upon completion/error/warn, like {@link DownloadFileThread}.
+     *
+     * @return
+     *      True if the engine took the download,
+     *      False if the caller should use a {@link DownloadFileThread} instead.
+     */
+    boolean download(URL url, Path saveAs, String referrer, Map<String, String> cookies) {
+        return false;
+    }
+
+    /**
+     * Waits for all downloads started so far to finish.
+     */
+    void awaitCompletion() {
+    }
+}
@@ -0,0 +1,37 @@
+package com.rarchives.ripme.ripper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors behind {@link DownloadThreadPool}.
+ * <p>
+ * This is the java 8 version, backed by a fixed pool of platform threads.
+ * On java 21 and newer it is replaced by the copy in META-INF/versions/21
+ * of the multi-release jar, which runs every task on its own virtual thread.
+ */
+final class DownloadExecutors {
+
+    private DownloadExecutors() {
+    }
+
+    /**
+     * @param threadPoolName
+     *      Name of the pool, used for naming threads.
+     * @param threads
+     *      Maximum number of tasks running at the same time.
+     * @return
+     *      Executor running at most threads tasks at once.
+     */
+    static ExecutorService newExecutor(String threadPoolName, int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * @return
+     *      True if tasks run on virtual threads.
+     */
+    static boolean usesVirtualThreads() {
+        return false;
+    }
+}
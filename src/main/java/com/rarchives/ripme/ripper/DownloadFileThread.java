@@ -8,10 +8,20 @@ import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -21,17 +31,36 @@ import org.apache.logging.log4j.Logger;
 import org.jsoup.HttpStatusException;
 
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.CookieStore;
+import com.rarchives.ripme.utils.Bandwidth;
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.HostConcurrency;
+import com.rarchives.ripme.utils.Mirrors;
+import com.rarchives.ripme.utils.ProxyRouter;
+import com.rarchives.ripme.utils.RetryPolicy;
+import com.rarchives.ripme.utils.RipLog;
 import com.rarchives.ripme.utils.Utils;
 
 /**
- * Thread for downloading files. Includes retry logic, observer notifications,
- * and other goodies.
+ * Task for downloading files. Includes retry logic, observer notifications,
+ * and other goodies. Runs on the ripper's {@link DownloadThreadPool}.
  */
-class DownloadFileThread extends Thread {
+class DownloadFileThread implements Runnable {
     private static final Logger logger = LogManager.getLogger(DownloadFileThread.class);
+    private static final int MAX_REDIRECTS = 10;
+    // Runs the requests racing each other when a download is hedged across mirrors
+    private static final ExecutorService hedgePool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "download-hedge");
+        t.setDaemon(true);
+        return t;
+    });
+    // Connection -> proxy it was opened through, see ProxyRouter
+    private static final Map<HttpURLConnection, java.net.Proxy> routes = Collections.synchronizedMap(new WeakHashMap<>());
 
+    // Tasks can sit in the queue for a while, so keep them small: settings
+    // and derived values are only looked up once the download starts
     private String referrer = "";
-    private Map<String, String> cookies = new HashMap<>();
+    private Map<String, String> cookies = Collections.emptyMap();
 
     private URL url;
     private Path saveAs;
@@ -40,16 +69,12 @@ class DownloadFileThread extends Thread {
     private int retries;
     private Boolean getFileExtFromMIME;
 
-    private final int TIMEOUT;
+    private int TIMEOUT;
 
     public DownloadFileThread(URL url, Path saveAs, AbstractRipper observer, Boolean getFileExtFromMIME) {
-        super();
         this.url = url;
         this.saveAs = saveAs;
-        this.prettySaveAs = Utils.removeCWD(saveAs);
         this.observer = observer;
-        this.retries = Utils.getConfigInteger("download.retries", 1);
-        this.TIMEOUT = Utils.getConfigInteger("download.timeout", 60000);
         this.getFileExtFromMIME = getFileExtFromMIME;
     }
 
@@ -61,18 +86,41 @@ class DownloadFileThread extends Thread {
         this.cookies = cookies;
     }
 
+    URL getURL() {
+        return url;
+    }
+
+    AbstractRipper getRipper() {
+        return observer;
+    }
+
+    @Override
+    public void run() {
+        // Logged to the log of the rip as well, see RipLog
+        String previousLog = RipLog.tag(observer.getWorkingDir());
+        try {
+            download();
+        } finally {
+            RipLog.restore(previousLog);
+        }
+    }
+
     /**
      * Attempts to download the file. Retries as needed. Notifies observers upon
      * completion/error/warn.
      */
-    public void run() {
+    private void download() {
+        this.prettySaveAs = Utils.removeCWD(saveAs);
+        this.retries = Utils.getConfigInteger("download.retries", 1);
+        this.TIMEOUT = Utils.getConfigInteger("download.timeout", 60000);
         // First thing we make sure the file name doesn't have any illegal chars in it
         saveAs = Paths.get(
                 saveAs.getParent().toAbsolutePath() + "/" + Utils.sanitizeSaveAs(saveAs.getFileName().toString()));
         long fileSize = 0;
         int bytesTotal = 0;
         int bytesDownloaded = 0;
-        if (Files.exists(saveAs) && observer.tryResumeDownload()) {
+        boolean saveAsExists = DirectoryIndex.exists(saveAs);
+        if (saveAsExists && observer.tryResumeDownload()) {
             try {
                 fileSize = Files.size(saveAs);
             } catch (IOException e) {
@@ -85,86 +133,83 @@ class DownloadFileThread extends Thread {
             observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
             return;
         }
-        if (Files.exists(saveAs) && !observer.tryResumeDownload() && !getFileExtFromMIME
-                || Utils.fuzzyExists(Paths.get(saveAs.getParent().toString()), saveAs.getFileName().toString()) && getFileExtFromMIME
+        if (saveAsExists && !observer.tryResumeDownload() && !getFileExtFromMIME
+                || Utils.fuzzyExists(saveAs.getParent(), saveAs.getFileName().toString()) && getFileExtFromMIME
                         && !observer.tryResumeDownload()) {
             if (Utils.getConfigBoolean("file.overwrite", false)) {
-                logger.info("[!] " + Utils.getLocalizedString("deleting.existing.file") + prettySaveAs);
+                logger.info("[!] {}{}", Utils.getLocalizedString("deleting.existing.file"), prettySaveAs);
                 try {
                     Files.delete(saveAs);
+                    DirectoryIndex.fileRemoved(saveAs);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             } else {
-                logger.info("[!] " + Utils.getLocalizedString("skipping") + " " + url + " -- "
-                        + Utils.getLocalizedString("file.already.exists") + ": " + prettySaveAs);
+                logger.info("[!] {} {} -- {}: {}", Utils.getLocalizedString("skipping"), url,
+                        Utils.getLocalizedString("file.already.exists"), prettySaveAs);
                 observer.downloadExists(url, saveAs);
                 return;
             }
         }
         URL urlToDownload = this.url;
-        boolean redirected = false;
+        int redirects = 0;
         int tries = 0; // Number of attempts to download
         do {
             tries += 1;
             InputStream bis = null;
             OutputStream fos = null;
+            // Set when the server answered, so errors after that don't count against the host
+            boolean answered = false;
+            String retryAfter = null;
+            // How long the host is still paused for, see RetryPolicy
+            long paused = 0;
+            // Host whose download slot this try holds, see HostConcurrency
+            URL slot = null;
+            long latency = 0;
+            long transferred = 0;
+            RipEvents.Download event = RipEvents.download(observer, urlToDownload);
             try {
-                logger.info("    Downloading file: " + urlToDownload + (tries > 0 ? " Retry #" + tries : ""));
+                logger.info("    Downloading file: {}{}", urlToDownload, tries > 0 ? " Retry #" + tries : "");
                 observer.sendUpdate(STATUS.DOWNLOAD_STARTED, url.toExternalForm());
 
-                // Setup HTTP request
-                HttpURLConnection huc;
-                if (this.url.toString().startsWith("https")) {
-                    huc = (HttpsURLConnection) urlToDownload.openConnection();
-                } else {
-                    huc = (HttpURLConnection) urlToDownload.openConnection();
-                }
-                huc.setInstanceFollowRedirects(true);
-                // It is important to set both ConnectTimeout and ReadTimeout. If you don't then
-                // ripme will wait forever
-                // for the server to send data after connecting.
-                huc.setConnectTimeout(TIMEOUT);
-                huc.setReadTimeout(TIMEOUT);
-                huc.setRequestProperty("accept", "*/*");
-                if (!referrer.equals("")) {
-                    huc.setRequestProperty("Referer", referrer); // Sic
-                }
-                huc.setRequestProperty("User-agent", AbstractRipper.USER_AGENT);
-                String cookie = "";
-                for (String key : cookies.keySet()) {
-                    if (!cookie.equals("")) {
-                        cookie += "; ";
-                    }
-                    cookie += key + "=" + cookies.get(key);
-                }
-                huc.setRequestProperty("Cookie", cookie);
-                if (observer.tryResumeDownload()) {
-                    if (fileSize != 0) {
-                        huc.setRequestProperty("Range", "bytes=" + fileSize + "-");
+                RetryPolicy.acquire(urlToDownload);
+                HostConcurrency.acquire(urlToDownload);
+                slot = urlToDownload;
+                long requested = System.currentTimeMillis();
+                HttpURLConnection huc = connect(urlToDownload, fileSize);
+                event.connected();
+                int statusCode = huc.getResponseCode();
+                event.answered(statusCode);
+                latency = System.currentTimeMillis() - requested;
+                answered = true;
+                ProxyRouter.report(huc.getURL(), routes.get(huc), statusCode, huc.getHeaderField("Retry-After"));
+                logger.debug("Status code: {}", statusCode);
+                CookieStore.capture(huc.getURL(), huc.getHeaderFields());
+                if (RetryPolicy.isRetryable(statusCode)) {
+                    RetryPolicy.failed(urlToDownload);
+                    if (statusCode == 429 || statusCode == 503 || statusCode == 504) {
+                        HostConcurrency.congested(urlToDownload);
                     }
+                    retryAfter = huc.getHeaderField("Retry-After");
+                    // Throw exception so download can be retried
+                    throw new IOException(Utils.getLocalizedString("retriable.status.code") + " " + statusCode);
                 }
-                logger.debug(Utils.getLocalizedString("request.properties") + ": " + huc.getRequestProperties());
-                huc.connect();
-
-                int statusCode = huc.getResponseCode();
-                logger.debug("Status code: " + statusCode);
+                RetryPolicy.succeeded(urlToDownload);
                 // If the server doesn't allow resuming downloads error out
-                if (statusCode != 206 && observer.tryResumeDownload() && Files.exists(saveAs)) {
+                if (statusCode != 206 && observer.tryResumeDownload() && saveAsExists) {
                     // TODO find a better way to handle servers that don't support resuming
                     // downloads then just erroring out
                     throw new IOException(Utils.getLocalizedString("server.doesnt.support.resuming.downloads"));
                 }
                 if (statusCode / 100 == 3) { // 3xx Redirect
-                    if (!redirected) {
-                        // Don't increment retries on the first redirect
-                        tries--;
-                        redirected = true;
-                    }
                     String location = huc.getHeaderField("Location");
-                    urlToDownload = new URL(location);
-                    // Throw exception so download can be retried
-                    throw new IOException("Redirect status code " + statusCode + " - redirect to " + location);
+                    if (location == null || ++redirects > MAX_REDIRECTS) {
+                        throw new IOException("Redirect status code " + statusCode + " - redirect to " + location);
+                    }
+                    // Follow it right away, redirects don't count as tries
+                    urlToDownload = new URL(urlToDownload, location);
+                    tries--;
+                    continue;
                 }
                 if (statusCode / 100 == 4) { // 4xx errors
                     logger.error("[!] " + Utils.getLocalizedString("nonretriable.status.code") + " " + statusCode
@@ -174,8 +219,6 @@ class DownloadFileThread extends Thread {
                     return; // Not retriable, drop out.
                 }
                 if (statusCode / 100 == 5) { // 5xx errors
-                    observer.downloadErrored(url, Utils.getLocalizedString("retriable.status.code") + " " + statusCode
-                            + " while downloading " + url.toExternalForm());
                     // Throw exception so download can be retried
                     throw new IOException(Utils.getLocalizedString("retriable.status.code") + " " + statusCode);
                 }
@@ -192,7 +235,7 @@ class DownloadFileThread extends Thread {
                     bytesTotal = huc.getContentLength();
                     observer.setBytesTotal(bytesTotal);
                     observer.sendUpdate(STATUS.TOTAL_BYTES, bytesTotal);
-                    logger.debug("Size of file at " + this.url + " = " + bytesTotal + "b");
+                    logger.debug("Size of file at {} = {}b", this.url, bytesTotal);
                 }
 
                 // Save file
@@ -259,14 +302,24 @@ class DownloadFileThread extends Thread {
                 if (shouldSkipFileDownload) {
                     logger.debug("Not downloading whole file because it is over 10mb and this is a test");
                 } else {
-                    while ((bytesRead = bis.read(data)) != -1) {
+                    while ((bytesRead = bis.read(data, 0, Bandwidth.readSize(huc.getURL(), data.length))) != -1) {
                         try {
                             observer.stopCheck();
                         } catch (IOException e) {
                             observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
                             return;
                         }
+                        try {
+                            Bandwidth.consume(huc.getURL(), bytesRead);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
+                            return;
+                        }
+                        event.writing();
                         fos.write(data, 0, bytesRead);
+                        event.written(bytesRead);
+                        transferred += bytesRead;
                         if (observer.useByteProgessBar()) {
                             bytesDownloaded += bytesRead;
                             observer.setBytesCompleted(bytesDownloaded);
@@ -276,12 +329,19 @@ class DownloadFileThread extends Thread {
                 }
                 bis.close();
                 fos.close();
+                DirectoryIndex.fileAdded(saveAs);
+                HostConcurrency.succeeded(urlToDownload, transferred, latency);
                 break; // Download successful: break out of infinite loop
             } catch (SocketTimeoutException timeoutEx) {
                 // Handle the timeout
                 logger.error("[!] " + url.toExternalForm() + " timedout!");
-                // Download failed, break out of loop
-                break;
+                RetryPolicy.failed(urlToDownload);
+                HostConcurrency.congested(urlToDownload);
+            } catch (RetryPolicy.HostPausedException e) {
+                logger.warn("[!] {}, waiting to download {}", e.getMessage(), url);
+                paused = e.getRemaining();
+                // Waiting for a paused host isn't a try, only the retry budget limits it
+                tries--;
             } catch (HttpStatusException hse) {
                 logger.debug(Utils.getLocalizedString("http.status.exception"), hse);
                 logger.error("[!] HTTP status " + hse.getStatusCode() + " while downloading from " + urlToDownload);
@@ -294,6 +354,9 @@ class DownloadFileThread extends Thread {
                 logger.debug("IOException", e);
                 logger.error("[!] " + Utils.getLocalizedString("exception.while.downloading.file") + ": " + url + " - "
                         + e.getMessage());
+                if (!answered && RetryPolicy.isRetryable(e)) {
+                    RetryPolicy.failed(urlToDownload);
+                }
             } catch (NullPointerException npe){
 
                 logger.error("[!] " + Utils.getLocalizedString("failed.to.download") + " for URL " + url);
@@ -302,6 +365,10 @@ class DownloadFileThread extends Thread {
                 return;
 
             }finally {
+                event.end();
+                if (slot != null) {
+                    HostConcurrency.release(slot);
+                }
                 // Close any open streams
                 try {
                     if (bis != null) {
@@ -323,9 +390,187 @@ class DownloadFileThread extends Thread {
                         Utils.getLocalizedString("failed.to.download") + " " + url.toExternalForm());
                 return;
             }
+            if (!RetryPolicy.backoff(urlToDownload, tries,
+                    Math.max(paused, RetryPolicy.retryAfterMillis(retryAfter)))) {
+                observer.downloadErrored(url,
+                        Utils.getLocalizedString("failed.to.download") + " " + url.toExternalForm());
+                return;
+            }
         } while (true);
         observer.downloadCompleted(url, saveAs);
-        logger.info("[+] Saved " + url + " as " + this.prettySaveAs);
+        logger.info("[+] Saved {} as {}", url, this.prettySaveAs);
     }
 
+    /**
+     * Connects to the file and waits for the response headers.
+     * <p>
+     * If the file has known mirrors ({@link Mirrors}) and download.hedge is on, the fastest
+     * one is asked first. When it hasn't answered within its usual latency, the next mirror
+     * is asked as well, and so on; the first successful answer is used and the other
+     * requests are dropped.
+     */
+    private HttpURLConnection connect(URL target, long fileSize) throws IOException {
+        List<URL> candidates = Utils.getConfigBoolean("download.hedge", true)
+                ? Mirrors.candidatesFor(target) : Collections.singletonList(target);
+        if (candidates.size() == 1) {
+            HttpURLConnection huc = openConnection(target, fileSize);
+            try {
+                huc.connect();
+            } catch (IOException e) {
+                ProxyRouter.failed(target, routes.get(huc));
+                throw e;
+            }
+            return huc;
+        }
+
+        ExecutorCompletionService<HttpURLConnection> attempts = new ExecutorCompletionService<>(hedgePool);
+        List<HttpURLConnection> opened = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean decided = new AtomicBoolean(false);
+        HttpURLConnection answer = null;
+        IOException error = null;
+        int next = 0;
+        int running = 0;
+        try {
+            attempts.submit(() -> attempt(candidates.get(0), fileSize, opened, decided));
+            next++;
+            running++;
+            while (running > 0) {
+                Future<HttpURLConnection> done;
+                if (next < candidates.size()) {
+                    done = attempts.poll(Mirrors.hedgeDelay(candidates.get(next - 1)), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        URL mirror = candidates.get(next++);
+                        logger.info("    No answer from {} yet, also trying {}", candidates.get(next - 2).getHost(), mirror);
+                        attempts.submit(() -> attempt(mirror, fileSize, opened, decided));
+                        running++;
+                        continue;
+                    }
+                } else {
+                    done = attempts.take();
+                }
+                running--;
+                try {
+                    HttpURLConnection huc = done.get();
+                    if (huc.getResponseCode() / 100 == 2) {
+                        if (answer != null) {
+                            answer.disconnect();
+                        }
+                        answer = huc;
+                        break;
+                    }
+                    // Keep the first failed answer, it is reported if no mirror does better
+                    if (answer == null) {
+                        answer = huc;
+                    } else {
+                        huc.disconnect();
+                    }
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+                // Move on to the next mirror right away when all requests so far failed
+                if (running == 0 && next < candidates.size()) {
+                    URL mirror = candidates.get(next++);
+                    attempts.submit(() -> attempt(mirror, fileSize, opened, decided));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(Utils.getLocalizedString("download.interrupted"), e);
+        } finally {
+            decided.set(true);
+            synchronized (opened) {
+                for (HttpURLConnection huc : opened) {
+                    if (huc != answer) {
+                        huc.disconnect();
+                    }
+                }
+            }
+        }
+        if (answer == null) {
+            throw error;
+        }
+        if (!answer.getURL().getHost().equals(target.getHost())) {
+            logger.info("    Downloading {} from mirror {}", target, answer.getURL().getHost());
+        }
+        return answer;
+    }
+
+    /**
+     * One of the requests of a hedged download, timed for the mirror stats.
+     */
+    private HttpURLConnection attempt(URL target, long fileSize, List<HttpURLConnection> opened, AtomicBoolean decided)
+            throws IOException {
+        HttpURLConnection huc = openConnection(target, fileSize);
+        opened.add(huc);
+        long start = System.currentTimeMillis();
+        try {
+            huc.connect();
+            huc.getResponseCode();
+        } catch (IOException e) {
+            // A request that lost the race fails because it was disconnected, not because of its mirror or proxy
+            if (!decided.get()) {
+                Mirrors.recordLatency(target, Math.max(System.currentTimeMillis() - start, TIMEOUT));
+                ProxyRouter.failed(target, routes.get(huc));
+            }
+            throw e;
+        }
+        Mirrors.recordLatency(target, System.currentTimeMillis() - start);
+        if (decided.get()) {
+            // Lost the race while connecting
+            huc.disconnect();
+        }
+        return huc;
+    }
+
+    /**
+     * Sets up the request for a file, without connecting.
+     */
+    private HttpURLConnection openConnection(URL target, long fileSize) throws IOException {
+        java.net.Proxy proxy = ProxyRouter.select(target);
+        URLConnection connection = proxy == null ? target.openConnection() : target.openConnection(proxy);
+        HttpURLConnection huc;
+        if (target.toString().startsWith("https")) {
+            huc = (HttpsURLConnection) connection;
+        } else {
+            huc = (HttpURLConnection) connection;
+        }
+        if (proxy != null) {
+            routes.put(huc, proxy);
+        }
+        huc.setInstanceFollowRedirects(true);
+        // It is important to set both ConnectTimeout and ReadTimeout. If you don't then
+        // ripme will wait forever
+        // for the server to send data after connecting.
+        huc.setConnectTimeout(TIMEOUT);
+        huc.setReadTimeout(TIMEOUT);
+        huc.setRequestProperty("accept", "*/*");
+        if (!referrer.equals("")) {
+            huc.setRequestProperty("Referer", referrer); // Sic
+        }
+        huc.setRequestProperty("User-agent", AbstractRipper.USER_AGENT);
+        // Cookies given by the ripper win over the stored ones
+        Map<String, String> requestCookies = CookieStore.cookiesFor(target);
+        requestCookies.putAll(cookies);
+        String cookie = "";
+        for (String key : requestCookies.keySet()) {
+            if (!cookie.equals("")) {
+                cookie += "; ";
+            }
+            cookie += key + "=" + requestCookies.get(key);
+        }
+        huc.setRequestProperty("Cookie", cookie);
+        if (observer.tryResumeDownload()) {
+            if (fileSize != 0) {
+                huc.setRequestProperty("Range", "bytes=" + fileSize + "-");
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("{}: {}", Utils.getLocalizedString("request.properties"), huc.getRequestProperties());
+        }
+        return huc;
+    }
 }
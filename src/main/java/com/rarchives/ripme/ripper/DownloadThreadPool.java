@@ -1,7 +1,7 @@
 package com.rarchives.ripme.ripper;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import com.rarchives.ripme.utils.Utils;
@@ -9,12 +9,23 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * Simple wrapper around a FixedThreadPool.
+ * Simple wrapper around a FixedThreadPool, or a pool of virtual threads
+ * when running on java 21 or newer (see {@link DownloadExecutors}).
+ * <p>
+ * At most threads.queue.size tasks can be queued or running at once. When the
+ * queue is full {@link #addThread(Runnable)} blocks until a task finishes, so a
+ * ripper crawling a huge album slows down to the download speed instead of
+ * piling up pending downloads in memory.
  */
 public class DownloadThreadPool {
 
     private static final Logger logger = LogManager.getLogger(DownloadThreadPool.class);
-    private ThreadPoolExecutor threadPool = null;
+    // Pool whose task is running on the current thread, if any
+    private static final ThreadLocal<DownloadThreadPool> runningIn = new ThreadLocal<>();
+
+    private String threadPoolName;
+    private ExecutorService threadPool = null;
+    private Semaphore queueSlots = null;
 
     public DownloadThreadPool() {
         initialize("Main");
@@ -23,23 +34,74 @@ public class DownloadThreadPool {
     public DownloadThreadPool(String threadPoolName) {
         initialize(threadPoolName);
     }
-    
+
+    public DownloadThreadPool(String threadPoolName, int threads) {
+        initialize(threadPoolName, threads);
+    }
+
+    private void initialize(String threadPoolName) {
+        initialize(threadPoolName, Utils.getConfigInteger("threads.size", 10));
+    }
+
     /**
      * Initializes the threadpool.
      * @param threadPoolName Name of the threadpool.
+     * @param threads Number of threads.
      */
-    private void initialize(String threadPoolName) {
-        int threads = Utils.getConfigInteger("threads.size", 10);
-        logger.debug("Initializing " + threadPoolName + " thread pool with " + threads + " threads");
-        threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads);
+    private void initialize(String threadPoolName, int threads) {
+        this.threadPoolName = threadPoolName;
+        int queueSize = Utils.getConfigInteger("threads.queue.size", 256);
+        logger.debug("Initializing {} thread pool with {} threads{}{}",
+                threadPoolName, threads,
+                DownloadExecutors.usesVirtualThreads() ? " (virtual)" : "",
+                queueSize > 0 ? ", queue size " + queueSize : "");
+        threadPool = DownloadExecutors.newExecutor(threadPoolName, threads);
+        if (queueSize > 0) {
+            queueSlots = new Semaphore(Math.max(queueSize, threads));
+        }
     }
     /**
-     * For adding threads to execution pool.
+     * For adding tasks to execution pool.
+     * Blocks while the queue is full.
      * @param t 
-     *      Thread to be added.
+     *      Task to be added.
      */
-    public void addThread(Thread t) {
-        threadPool.execute(t);
+    public void addThread(Runnable t) {
+        // A task queueing more work on its own pool must not wait for itself
+        RipEvents.Span wait = RipEvents.queueWait(threadPoolName, t);
+        if (queueSlots == null || runningIn.get() == this) {
+            threadPool.execute(() -> runTask(t, false, wait));
+            return;
+        }
+        try {
+            queueSlots.acquire();
+        } catch (InterruptedException e) {
+            logger.error("[!] Interrupted while waiting for a free download slot, running the task right here: ", e);
+            Thread.currentThread().interrupt();
+            // Dropping it would leave its item pending forever; run inline so it completes or errors out
+            runTask(t, false, wait);
+            return;
+        }
+        try {
+            threadPool.execute(() -> runTask(t, true, wait));
+        } catch (RuntimeException e) {
+            queueSlots.release();
+            throw e;
+        }
+    }
+
+    private void runTask(Runnable t, boolean holdsSlot, RipEvents.Span wait) {
+        wait.end();
+        DownloadThreadPool previous = runningIn.get();
+        runningIn.set(this);
+        try {
+            t.run();
+        } finally {
+            runningIn.set(previous);
+            if (holdsSlot) {
+                queueSlots.release();
+            }
+        }
     }
 
     /**
@@ -6,21 +6,27 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
 import javax.net.ssl.HttpsURLConnection;
 
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.Bandwidth;
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.ProxyRouter;
+import com.rarchives.ripme.utils.RipLog;
 import com.rarchives.ripme.utils.Utils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * Thread for downloading files.
+ * Task for downloading files.
  * Includes retry logic, observer notifications, and other goodies.
+ * Runs on the ripper's {@link DownloadThreadPool}.
  */
-class DownloadVideoThread extends Thread {
+class DownloadVideoThread implements Runnable {
 
     private static final Logger logger = LogManager.getLogger(DownloadVideoThread.class);
 
@@ -31,35 +37,54 @@ class DownloadVideoThread extends Thread {
     private int retries;
 
     public DownloadVideoThread(URL url, Path saveAs, AbstractRipper observer) {
-        super();
         this.url = url;
         this.saveAs = saveAs;
-        this.prettySaveAs = Utils.removeCWD(saveAs);
         this.observer = observer;
-        this.retries = Utils.getConfigInteger("download.retries", 1);
+    }
+
+    URL getURL() {
+        return url;
+    }
+
+    AbstractRipper getRipper() {
+        return observer;
+    }
+
+    @Override
+    public void run() {
+        // Logged to the log of the rip as well, see RipLog
+        String previousLog = RipLog.tag(observer.getWorkingDir());
+        try {
+            download();
+        } finally {
+            RipLog.restore(previousLog);
+        }
     }
 
     /**
      * Attempts to download the file. Retries as needed.
      * Notifies observers upon completion/error/warn.
      */
-    public void run() {
+    private void download() {
+        this.prettySaveAs = Utils.removeCWD(saveAs);
+        this.retries = Utils.getConfigInteger("download.retries", 1);
         try {
             observer.stopCheck();
         } catch (IOException e) {
             observer.downloadErrored(url, "Download interrupted");
             return;
         }
-        if (Files.exists(saveAs)) {
+        if (DirectoryIndex.exists(saveAs)) {
             if (Utils.getConfigBoolean("file.overwrite", false)) {
-                logger.info("[!] Deleting existing file" + prettySaveAs);
+                logger.info("[!] Deleting existing file{}", prettySaveAs);
                 try {
                     Files.delete(saveAs);
+                    DirectoryIndex.fileRemoved(saveAs);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             } else {
-                logger.info("[!] Skipping " + url + " -- file already exists: " + prettySaveAs);
+                logger.info("[!] Skipping {} -- file already exists: {}", url, prettySaveAs);
                 observer.downloadExists(url, saveAs);
                 return;
             }
@@ -75,7 +100,7 @@ class DownloadVideoThread extends Thread {
         }
         observer.setBytesTotal(bytesTotal);
         observer.sendUpdate(STATUS.TOTAL_BYTES, bytesTotal);
-        logger.debug("Size of file at " + this.url + " = " + bytesTotal + "b");
+        logger.debug("Size of file at {} = {}b", this.url, bytesTotal);
 
         int tries = 0; // Number of attempts to download
         do {
@@ -83,16 +108,18 @@ class DownloadVideoThread extends Thread {
             byte[] data = new byte[1024 * 256];
             int bytesRead;
             try {
-                logger.info("    Downloading file: " + url + (tries > 0 ? " Retry #" + tries : ""));
+                logger.info("    Downloading file: {}{}", url, tries > 0 ? " Retry #" + tries : "");
                 observer.sendUpdate(STATUS.DOWNLOAD_STARTED, url.toExternalForm());
 
                 // Setup HTTP request
+                java.net.Proxy proxy = ProxyRouter.select(this.url);
+                URLConnection connection = proxy == null ? this.url.openConnection() : this.url.openConnection(proxy);
                 HttpURLConnection huc;
                 if (this.url.toString().startsWith("https")) {
-                    huc = (HttpsURLConnection) this.url.openConnection();
+                    huc = (HttpsURLConnection) connection;
                 }
                 else {
-                    huc = (HttpURLConnection) this.url.openConnection();
+                    huc = (HttpURLConnection) connection;
                 }
                 huc.setInstanceFollowRedirects(true);
                 huc.setConnectTimeout(0); // Never timeout
@@ -100,18 +127,27 @@ class DownloadVideoThread extends Thread {
                 huc.setRequestProperty("Referer", this.url.toExternalForm()); // Sic
                 huc.setRequestProperty("User-agent", AbstractRipper.USER_AGENT);
                 tries += 1;
-                logger.debug("Request properties: " + huc.getRequestProperties().toString());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Request properties: {}", huc.getRequestProperties());
+                }
                 huc.connect();
                 // Check status code
                 bis = new BufferedInputStream(huc.getInputStream());
                 fos = Files.newOutputStream(saveAs);
-                while ( (bytesRead = bis.read(data)) != -1) {
+                while ( (bytesRead = bis.read(data, 0, Bandwidth.readSize(huc.getURL(), data.length))) != -1) {
                     try {
                         observer.stopCheck();
                     } catch (IOException e) {
                         observer.downloadErrored(url, "Download interrupted");
                         return;
                     }
+                    try {
+                        Bandwidth.consume(huc.getURL(), bytesRead);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        observer.downloadErrored(url, "Download interrupted");
+                        return;
+                    }
                     fos.write(data, 0, bytesRead);
                     bytesDownloaded += bytesRead;
                     observer.setBytesCompleted(bytesDownloaded);
@@ -119,6 +155,7 @@ class DownloadVideoThread extends Thread {
                 }
                 bis.close();
                 fos.close();
+                DirectoryIndex.fileAdded(saveAs);
                 break; // Download successful: break out of infinite loop
             } catch (IOException e) {
                 logger.error("[!] Exception while downloading file: " + url + " - " + e.getMessage(), e);
@@ -138,7 +175,7 @@ class DownloadVideoThread extends Thread {
             }
         } while (true);
         observer.downloadCompleted(url, saveAs);
-        logger.info("[+] Saved " + url + " as " + this.prettySaveAs);
+        logger.info("[+] Saved {} as {}", url, this.prettySaveAs);
     }
 
     /**
@@ -0,0 +1,23 @@
+package com.rarchives.ripme.ripper;
+
+import java.io.IOException;
+
+/**
+ * Receives the items (file URLs) a ripper finds, one at a time, as soon as they are found.
+ * <p>
+ * Each accepted item is dispatched before accept() returns, so the first download starts
+ * while the ripper is still enumerating, and no listing has to be held in memory.
+ * accept() blocks while the download queue is full, which slows enumeration
+ * down to the speed of the downloads.
+ */
+@FunctionalInterface
+public interface ItemSink {
+    /**
+     * @param url
+     *      URL of the item that was found.
+     * @return
+     *      True if the ripper should keep emitting items,
+     *      False if it should stop (rip stopped, or a test only wants one item).
+     */
+    boolean accept(String url) throws IOException;
+}
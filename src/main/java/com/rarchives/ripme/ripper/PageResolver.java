@@ -0,0 +1,18 @@
+package com.rarchives.ripme.ripper;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Finds the file(s) behind an intermediate page (an "image page") and queues them
+ * with addURLToDownload. Runs on the ripper's resolve lane, see
+ * {@link AbstractRipper#resolvePage(URL, PageResolver)}.
+ */
+@FunctionalInterface
+public interface PageResolver {
+    /**
+     * @param page
+     *      URL of the page to resolve.
+     */
+    void resolve(URL page) throws IOException;
+}
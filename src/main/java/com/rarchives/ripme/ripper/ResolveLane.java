@@ -0,0 +1,118 @@
+package com.rarchives.ripme.ripper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.rarchives.ripme.utils.Utils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The "resolve" lane of a rip: loads intermediate pages to find the files to download.
+ * <p>
+ * Page requests are small and many, downloads are few and big, so they don't share
+ * threads: resolvers run on threads.resolve.size threads of their own and queue the files
+ * they find on the ripper's download pool (the "transfer" lane). Requests to a host are
+ * spaced out by the ripper's {@link AbstractRipper#getResolveInterval()}, across every
+ * running rip.
+ */
+class ResolveLane {
+
+    private static final Logger logger = LogManager.getLogger(ResolveLane.class);
+
+    // host -> earliest time the next page request may start
+    private static final Map<String, Long> nextRequest = new HashMap<>();
+
+    private final AbstractRipper ripper;
+    private final DownloadThreadPool pool;
+    // Pages submitted and not resolved yet, guarded by this
+    private int unresolved = 0;
+
+    ResolveLane(AbstractRipper ripper) {
+        this.ripper = ripper;
+        this.pool = new DownloadThreadPool(ripper.getHost() + "-resolve",
+                Math.max(1, Utils.getConfigInteger("threads.resolve.size", 4)));
+    }
+
+    /**
+     * Queues a page, blocking while the lane's queue is full.
+     */
+    void submit(URL page, PageResolver resolver) {
+        synchronized (this) {
+            unresolved++;
+        }
+        try {
+            pool.addThread(() -> {
+                try {
+                    if (ripper.isStopped() || !waitForRequestSlot(page)) {
+                        return;
+                    }
+                    resolver.resolve(page);
+                } catch (IOException e) {
+                    logger.error("[!] Exception while loading/parsing {}", page, e);
+                } finally {
+                    resolved();
+                }
+            });
+        } catch (RuntimeException e) {
+            resolved();
+            throw e;
+        }
+    }
+
+    private synchronized void resolved() {
+        unresolved--;
+        notifyAll();
+    }
+
+    /**
+     * Waits until every page submitted so far is resolved (or skipped because the rip
+     * stopped), keeping the lane open for more.
+     */
+    synchronized void drain() {
+        while (unresolved > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                logger.error("[!] Interrupted while waiting for pages to resolve: ", e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void waitForThreads() {
+        pool.waitForThreads();
+    }
+
+    /**
+     * @return
+     *      False if interrupted while waiting.
+     */
+    private boolean waitForRequestSlot(URL page) {
+        long interval = ripper.getResolveInterval();
+        if (interval <= 0) {
+            return true;
+        }
+        String host = page.getHost().toLowerCase(Locale.ROOT);
+        long slot;
+        synchronized (nextRequest) {
+            slot = Math.max(System.currentTimeMillis(), nextRequest.getOrDefault(host, 0L));
+            nextRequest.put(host, slot + interval);
+        }
+        long wait = slot - System.currentTimeMillis();
+        if (wait <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.rarchives.ripme.ripper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.rarchives.ripme.utils.Utils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Where a paged rip is at, saved in its working directory so a stopped or crashed rip
+ * can pick up from the page it was on instead of walking the whole album again.
+ * <p>
+ * Holds the page being ripped (its URL for HTML rippers, the page itself for JSON
+ * rippers), the item index the page starts at, so files keep their numbering, and the
+ * downloads that hadn't finished. It is written each time a page is started (once the
+ * intermediate pages the previous ones queued on the resolve lane are resolved), as downloads
+ * are queued and finish (at most once per SAVE_INTERVAL) and when the rip is stopped,
+ * and deleted once the rip completes. After a crash, downloads started within the last
+ * SAVE_INTERVAL may not be listed, and their files may be cut short.
+ * <p>
+ * The items of the resumed page are queued again even if the URL history has them,
+ * since the history is written when an item is queued, not when it is done.
+ * Set checkpoints.enabled = false to turn this off.
+ */
+final class RipCheckpoint {
+
+    private static final Logger logger = LogManager.getLogger(RipCheckpoint.class);
+    private static final String FILE_NAME = ".ripme-checkpoint.json";
+    // Least time between two saves for queued or finished downloads, in ms
+    private static final long SAVE_INTERVAL = 1000;
+
+    private final Path file;
+    private final URL url;
+    private String page = null;
+    private JSONObject jsonPage = null;
+    private int index = 0;
+    private Map<URL, Path> pending = new LinkedHashMap<>();
+    private boolean resumed = false;
+    private int pagesStarted = 0;
+    private long lastSave = 0;
+    private boolean deleted = false;
+
+    private RipCheckpoint(Path workingDir, URL url) {
+        this.file = workingDir.resolve(FILE_NAME);
+        this.url = url;
+    }
+
+    /**
+     * @return
+     *      A new checkpoint for this rip, or null if checkpoints are disabled.
+     */
+    static RipCheckpoint start(Path workingDir, URL url) {
+        if (workingDir == null || !Utils.getConfigBoolean("checkpoints.enabled", true)) {
+            return null;
+        }
+        return new RipCheckpoint(workingDir, url);
+    }
+
+    /**
+     * @return
+     *      The checkpoint a previous rip of this URL left in the working directory,
+     *      or null if there is none.
+     */
+    static RipCheckpoint load(Path workingDir, URL url) {
+        RipCheckpoint checkpoint = start(workingDir, url);
+        if (checkpoint == null || !Files.exists(checkpoint.file)) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(checkpoint.file), StandardCharsets.UTF_8));
+            if (!url.toExternalForm().equals(json.getString("url"))) {
+                return null;
+            }
+            checkpoint.page = json.optString("page", null);
+            checkpoint.jsonPage = json.optJSONObject("json_page");
+            checkpoint.index = json.getInt("index");
+            checkpoint.resumed = true;
+            JSONArray pendingJSON = json.getJSONArray("pending");
+            for (int i = 0; i < pendingJSON.length(); i++) {
+                JSONObject item = pendingJSON.getJSONObject(i);
+                checkpoint.pending.put(new URL(item.getString("url")), Paths.get(item.getString("path")));
+            }
+            return checkpoint;
+        } catch (IOException | JSONException e) {
+            logger.warn("Ignoring unreadable checkpoint {}: {}", checkpoint.file, e.getMessage());
+            return null;
+        }
+    }
+
+    String getPage() {
+        return page;
+    }
+
+    JSONObject getJSONPage() {
+        return jsonPage;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return
+     *      The downloads that were queued but not finished, by URL.
+     */
+    Map<URL, Path> getPending() {
+        return pending;
+    }
+
+    /**
+     * @return
+     *      True while a resumed rip is still on the page it resumed from (or re-queueing
+     *      the downloads that hadn't finished), whose items may be in the URL history
+     *      without having been downloaded.
+     */
+    synchronized boolean isOnResumedPage() {
+        return resumed && pagesStarted <= 1;
+    }
+
+    /**
+     * Records that the rip is starting a page, at the given item index, and saves.
+     */
+    synchronized void startPage(String page, int index, Map<URL, Path> pending) {
+        this.page = page;
+        this.jsonPage = null;
+        this.index = index;
+        pagesStarted++;
+        save(pending);
+    }
+
+    synchronized void startPage(JSONObject jsonPage, int index, Map<URL, Path> pending) {
+        this.page = null;
+        this.jsonPage = jsonPage;
+        this.index = index;
+        pagesStarted++;
+        save(pending);
+    }
+
+    /**
+     * Records that a download was queued or finished, saving unless the last save was
+     * less than SAVE_INTERVAL ago.
+     */
+    synchronized void itemsChanged(Map<URL, Path> pending) {
+        if (System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) {
+            save(pending);
+        }
+    }
+
+    /**
+     * Saves the current page along with the downloads that haven't finished yet.
+     */
+    synchronized void save(Map<URL, Path> pending) {
+        if (deleted || (page == null && jsonPage == null)) {
+            return;
+        }
+        lastSave = System.currentTimeMillis();
+        synchronized (pending) {
+            this.pending = new LinkedHashMap<>(pending);
+        }
+        JSONArray pendingJSON = new JSONArray();
+        for (Map.Entry<URL, Path> item : this.pending.entrySet()) {
+            pendingJSON.put(new JSONObject()
+                    .put("url", item.getKey().toExternalForm())
+                    .put("path", item.getValue().toString()));
+        }
+        JSONObject json = new JSONObject();
+        json.put("url", url.toExternalForm());
+        json.put("index", index);
+        json.put("pending", pendingJSON);
+        if (page != null) {
+            json.put("page", page);
+        } else {
+            json.put("json_page", jsonPage);
+        }
+        try {
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            Files.write(tmp, json.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Unable to save checkpoint to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the checkpoint, once the rip has completed.
+     */
+    synchronized void delete() {
+        deleted = true;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.rarchives.ripme.ripper;
+
+import java.net.URL;
+
+/**
+ * Flight recorder events for where the time of a rip goes: page fetches, page parsing,
+ * URL history lookups, waits for a download slot and the phases of each download.
+ * <p>
+ * This is the java 8 version, where every event is a no-op. On java 21 and newer it is
+ * replaced by the copy in META-INF/versions/21 of the multi-release jar, which commits
+ * JFR events (category RipMe) while a recording is running.
+ */
+final class RipEvents {
+
+    private static final Span NO_SPAN = new Span();
+    private static final Download NO_DOWNLOAD = new Download();
+
+    private RipEvents() {
+    }
+
+    /**
+     * Loading a page of the rip.
+     */
+    static Span pageFetch(AbstractRipper ripper, URL page) {
+        return NO_SPAN;
+    }
+
+    /**
+     * Finding the items of a page; end it with the number of items found. Pause it while
+     * queueing an item, so its parsing time only covers the page itself.
+     */
+    static Span pageParse(AbstractRipper ripper, URL page) {
+        return NO_SPAN;
+    }
+
+    /**
+     * Looking a URL up in the download history; end it with 1 if it was found, 0 if not.
+     */
+    static Span historyLookup(AbstractRipper ripper, String url) {
+        return NO_SPAN;
+    }
+
+    /**
+     * A task waiting for room in the queue of a download pool and then for a thread to run it.
+     */
+    static Span queueWait(String pool, Runnable task) {
+        return NO_SPAN;
+    }
+
+    /**
+     * One try at downloading a file.
+     */
+    static Download download(AbstractRipper ripper, URL url) {
+        return NO_DOWNLOAD;
+    }
+
+    static class Span {
+        /**
+         * Sets the URL the span is about, once it is known (e.g. after a redirect or for a next page).
+         */
+        void setURL(URL url) {
+        }
+
+        /**
+         * Stops counting time until {@link #resume()}, for work done on behalf of the span's caller.
+         */
+        void pause() {
+        }
+
+        void resume() {
+        }
+
+        void end() {
+        }
+
+        void end(long count) {
+        }
+    }
+
+    static class Download {
+        /**
+         * The connection to the server is up.
+         */
+        void connected() {
+        }
+
+        /**
+         * The response headers came in.
+         */
+        void answered(int status) {
+        }
+
+        /**
+         * Writing a block to disk starts; every call is followed by {@link #written(int)}.
+         */
+        void writing() {
+        }
+
+        void written(int bytes) {
+        }
+
+        void end() {
+        }
+    }
+}
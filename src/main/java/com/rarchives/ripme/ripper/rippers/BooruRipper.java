@@ -1,7 +1,6 @@
 package com.rarchives.ripme.ripper.rippers;
 
-import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.ripper.AbstractBooruRipper;
 import com.rarchives.ripme.utils.Utils;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -15,12 +14,16 @@ import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
 
-public class BooruRipper extends AbstractHTMLRipper {
+public class BooruRipper extends AbstractBooruRipper {
     private static final Logger logger = LogManager.getLogger(BooruRipper.class);
 
+    private static final int PAGE_SIZE = 100;
+
     private static Pattern gidPattern = null;
 
     public BooruRipper(URL url) throws IOException {
@@ -47,35 +50,20 @@ public class BooruRipper extends AbstractHTMLRipper {
         return url.toExternalForm().split("/")[2];
     }
 
-    private String getPage(int num) throws MalformedURLException {
-        return "http://" + getHost() + ".com/index.php?page=dapi&s=post&q=index&pid=" + num + "&tags=" + getTerm(url);
-
-    }
-
-    @Override
-    public Document getFirstPage() throws IOException {
-        return Http.url(getPage(0)).get();
-    }
-
     @Override
-    public Document getNextPage(Document doc) throws IOException {
-        int offset = Integer.parseInt(doc.getElementsByTag("posts").first().attr("offset"));
-        int num = Integer.parseInt(doc.getElementsByTag("posts").first().attr("count"));
-
-        if (offset + 100 > num) {
-            return null;
-        }
-
-        return Http.url(getPage(offset / 100 + 1)).get();
+    protected URL getPostsURL(int page, String beforeId) throws MalformedURLException {
+        return new URL("http://" + getHost() + ".com/index.php?page=dapi&s=post&q=index&limit=" + PAGE_SIZE
+                + "&pid=" + (page - 1) + "&tags=" + getTerm(url));
     }
 
     @Override
-    public List<String> getURLsFromPage(Document page) {
-        List<String> res = new ArrayList<>(100);
+    protected List<Post> parsePosts(URL pageURL, String body) {
+        Document page = Jsoup.parse(body, pageURL.toExternalForm(), Parser.xmlParser());
+        List<Post> posts = new ArrayList<>(PAGE_SIZE);
         for (Element e : page.getElementsByTag("post")) {
-            res.add(e.absUrl("file_url") + "#" + e.attr("id"));
+            posts.add(new Post(e.attr("id"), e.absUrl("file_url") + "#" + e.attr("id")));
         }
-        return res;
+        return posts;
     }
 
     @Override
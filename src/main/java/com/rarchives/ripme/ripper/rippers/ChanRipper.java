@@ -2,25 +2,35 @@ package com.rarchives.ripme.ripper.rippers;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
 import com.rarchives.ripme.ripper.rippers.ripperhelpers.ChanSite;
+import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
-import com.rarchives.ripme.utils.RipUtils;
+import com.rarchives.ripme.utils.LinkResolver;
+import com.rarchives.ripme.utils.Mirrors;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.rarchives.ripme.utils.Utils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.jsoup.Connection.Response;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
 public class ChanRipper extends AbstractHTMLRipper {
     private static List<ChanSite> bakedin_explicit_domains = Arrays.asList(
-            new ChanSite("boards.4chan.org",   Arrays.asList("4cdn.org", "is.4chan.org", "is2.4chan.org", "is3.4chan.org")),
-            new ChanSite("boards.4channel.org",   Arrays.asList("4cdn.org", "is.4chan.org", "is2.4chan.org", "is3.4chan.org")),
+            new ChanSite("boards.4chan.org",   Arrays.asList("4cdn.org", "is.4chan.org", "is2.4chan.org", "is3.4chan.org"))
+                    .withJsonApi("a.4cdn.org", "i.4cdn.org"),
+            new ChanSite("boards.4channel.org",   Arrays.asList("4cdn.org", "is.4chan.org", "is2.4chan.org", "is3.4chan.org"))
+                    .withJsonApi("a.4cdn.org", "i.4cdn.org"),
             new ChanSite("4archive.org",  "imgur.com"),
             new ChanSite("archive.4plebs.org", "img.4plebs.org"),
             new ChanSite("yuki.la", "ii.yuki.la"),
@@ -35,6 +45,10 @@ public class ChanRipper extends AbstractHTMLRipper {
             new ChanSite("archive.nyafuu.org"),
             new ChanSite("rbt.asia")
         );
+    static {
+        // 4chan serves its files from both hosts
+        Mirrors.addHostGroup("i.4cdn.org", "is2.4chan.org");
+    }
     private static List<ChanSite> user_give_explicit_domains = getChansFromConfig(Utils.getConfigString("chans.chan_sites", null));
     private static List<ChanSite> explicit_domains = new ArrayList<>();
 
@@ -74,6 +88,15 @@ public class ChanRipper extends AbstractHTMLRipper {
     private ChanSite chanSite;
     private Boolean generalChanSite = true;
 
+    // State of chans.watch mode
+    private int imageIndex = 0;
+    private long lastSeenPost = 0;
+    private final Set<String> seenURLs = new HashSet<>();
+    private String lastModified = null;
+    private boolean threadEnded = false;
+    // Keeps the rip open while the thread is polled; read from the download threads
+    private volatile boolean watching = false;
+
     public ChanRipper(URL url) throws IOException {
         super(url);
         for (ChanSite _chanSite : explicit_domains) {
@@ -261,7 +284,7 @@ public class ChanRipper extends AbstractHTMLRipper {
                     continue;
                 }
 
-                List<URL> urls = RipUtils.getFilesFromURL(originalURL);
+                List<URL> urls = LinkResolver.get(originalURL);
                 for (URL imageurl : urls) {
                     imageURLs.add(imageurl.toString());
                 }
@@ -278,4 +301,187 @@ public class ChanRipper extends AbstractHTMLRipper {
     public void downloadURL(URL url, int index) {
         addURLToDownload(url, getPrefix(index));
     }
+
+    /**
+     * With chans.watch = true the thread is kept open and polled for new posts until it
+     * 404s, gets archived or closed, sees no new post for chans.watch.max_idle minutes,
+     * or the rip is stopped.
+     */
+    @Override
+    public void rip() throws IOException {
+        if (!Utils.getConfigBoolean("chans.watch", false) || isThisATest()) {
+            super.rip();
+            return;
+        }
+        watching = true;
+        try {
+            watchThread();
+        } finally {
+            watching = false;
+        }
+        // Completes the rip once the last downloads are done
+        waitForThreads();
+    }
+
+    @Override
+    protected void checkIfComplete() {
+        // Downloads of a poll can all be done while the thread is still watched, the rip isn't
+        if (!watching) {
+            super.checkIfComplete();
+        }
+    }
+
+    /**
+     * Polls the thread, from chans.watch.min_interval seconds apart while it is active up to
+     * chans.watch.max_interval seconds apart once it goes quiet, doubling on every empty poll.
+     */
+    private void watchThread() throws IOException {
+        long minInterval = TimeUnit.SECONDS.toMillis(Math.max(1, Utils.getConfigInteger("chans.watch.min_interval", 10)));
+        long maxInterval = Math.max(minInterval, TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("chans.watch.max_interval", 300)));
+        long maxIdle = TimeUnit.MINUTES.toMillis(Utils.getConfigInteger("chans.watch.max_idle", 360));
+        URL jsonURL = getThreadJsonURL();
+        long interval = minInterval;
+        long lastActivity = System.currentTimeMillis();
+        boolean firstPoll = true;
+        while (!isStopped()) {
+            sendUpdate(STATUS.LOADING_RESOURCE, this.url.toExternalForm());
+            int newItems;
+            try {
+                newItems = jsonURL != null ? pollJSON(jsonURL) : pollHTML();
+            } catch (IOException e) {
+                if (firstPoll) {
+                    throw e;
+                }
+                // The board may be having a bad moment, try again later
+                LOGGER.warn("Failed to poll {}: {}", this.url, e.getMessage());
+                newItems = 0;
+            }
+            firstPoll = false;
+            if (threadEnded) {
+                LOGGER.info("Stopped watching {}, the thread has ended", this.url);
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (newItems > 0) {
+                lastActivity = now;
+                interval = minInterval;
+            } else {
+                interval = Math.min(interval * 2, maxInterval);
+            }
+            if (now - lastActivity > maxIdle) {
+                LOGGER.info("Stopped watching {}, no new posts for {} minutes", this.url, (now - lastActivity) / 60000);
+                break;
+            }
+            LOGGER.info("Found {} new posts in {}, next check in {}s", newItems, this.url, interval / 1000);
+            sendUpdate(STATUS.LOADING_RESOURCE, "Watching thread, next check in " + interval / 1000 + "s");
+            // Sleep in short steps so stopping the rip doesn't wait for the whole interval
+            for (long waited = 0; waited < interval && !isStopped(); waited += 1000) {
+                if (!sleep(1000)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return
+     *      The JSON endpoint of this thread (4chan API), or null if the board software has none.
+     */
+    private URL getThreadJsonURL() throws MalformedURLException {
+        if (generalChanSite || !chanSite.hasJsonApi()) {
+            return null;
+        }
+        return new URL("https://" + chanSite.jsonApiHost + "/" + getBoard() + "/thread/" + getGID(this.url) + ".json");
+    }
+
+    private String getBoard() {
+        return this.url.getPath().split("/")[1];
+    }
+
+    /**
+     * Downloads the files of the posts made since the last poll, read from the thread's JSON.
+     * @return
+     *      Number of new posts.
+     */
+    private int pollJSON(URL jsonURL) throws IOException {
+        Response response = fetchIfModified(jsonURL);
+        if (response == null) {
+            return 0;
+        }
+        JSONArray posts = new JSONObject(response.body()).getJSONArray("posts");
+        if (posts.length() > 0) {
+            JSONObject op = posts.getJSONObject(0);
+            threadEnded = op.optInt("archived") == 1 || op.optInt("closed") == 1;
+        }
+        int newPosts = 0;
+        for (int i = 0; i < posts.length(); i++) {
+            JSONObject post = posts.getJSONObject(i);
+            long postNumber = post.getLong("no");
+            if (postNumber <= lastSeenPost) {
+                continue;
+            }
+            lastSeenPost = postNumber;
+            newPosts++;
+            if (!post.has("tim") || post.optInt("filedeleted") == 1) {
+                continue;
+            }
+            download("https://" + chanSite.jsonMediaHost + "/" + getBoard() + "/" + post.getLong("tim") + post.getString("ext"));
+        }
+        return newPosts;
+    }
+
+    /**
+     * Downloads the links that weren't on the thread page at the last poll.
+     * Post markup differs between board softwares, so the page is diffed by link.
+     * @return
+     *      Number of new links.
+     */
+    private int pollHTML() throws IOException {
+        Response response = fetchIfModified(this.url);
+        if (response == null) {
+            return 0;
+        }
+        int newLinks = 0;
+        for (String imageURL : getURLsFromPage(response.parse())) {
+            if (seenURLs.add(imageURL)) {
+                newLinks++;
+                download(imageURL);
+            }
+        }
+        return newLinks;
+    }
+
+    /**
+     * @return
+     *      The response, or null if nothing changed since the last poll or the thread is gone.
+     */
+    private Response fetchIfModified(URL pollURL) throws IOException {
+        Http request = Http.url(pollURL).ignoreContentType();
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+        request.connection().ignoreHttpErrors(true);
+        Response response = request.response();
+        int status = response.statusCode();
+        if (status == 304) {
+            return null;
+        }
+        if (status == 404) {
+            threadEnded = true;
+            return null;
+        }
+        if (status != 200) {
+            throw new IOException("Status code " + status + " while polling " + pollURL);
+        }
+        lastModified = response.header("Last-Modified");
+        return response;
+    }
+
+    private void download(String imageURL) {
+        try {
+            downloadURL(new URL(imageURL), ++imageIndex);
+        } catch (MalformedURLException e) {
+            LOGGER.warn("Skipping malformed URL {}", imageURL);
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package com.rarchives.ripme.ripper.rippers;
 
-import com.rarchives.ripme.ripper.AbstractJSONRipper;
-import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.ripper.AbstractBooruRipper;
 import com.rarchives.ripme.utils.Utils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -16,13 +15,14 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class DanbooruRipper extends AbstractJSONRipper {
+public class DanbooruRipper extends AbstractBooruRipper {
     private static final String DOMAIN = "danbooru.donmai.us",
             HOST = "danbooru";
 
-    private Pattern gidPattern = null;
+    // Largest page the API serves
+    private static final int PAGE_SIZE = 200;
 
-    private int currentPageNum = 1;
+    private Pattern gidPattern = null;
 
     public DanbooruRipper(URL url) throws IOException {
         super(url);
@@ -38,43 +38,25 @@ public class DanbooruRipper extends AbstractJSONRipper {
         return HOST;
     }
 
-    private String getPage(int num) throws MalformedURLException {
-        return "https://" + getDomain() + "/posts.json?page=" + num + "&tags=" + getTag(url);
-    }
-
     @Override
-    protected JSONObject getFirstPage() throws IOException {
-        String newCompatibleJSON = "{ resources:" + Http.url(getPage(1)).getJSONArray() + " }";
-
-        return new JSONObject(newCompatibleJSON);
+    protected URL getPostsURL(int page, String beforeId) throws MalformedURLException {
+        // Deep page numbers are slow or refused, "b<id>" asks for the posts before that id
+        return new URL("https://" + getDomain() + "/posts.json?limit=" + PAGE_SIZE
+                + "&page=" + (beforeId == null ? "1" : "b" + beforeId) + "&tags=" + getTag(url));
     }
 
     @Override
-    protected JSONObject getNextPage(JSONObject doc) throws IOException {
-        currentPageNum++;
-
-        JSONArray resourcesJSONArray = Http.url(getPage(currentPageNum)).getJSONArray();
-
-        int resourcesJSONArrayLength = resourcesJSONArray.length();
-
-        if (resourcesJSONArrayLength == 0) {
-            currentPageNum = 0;
-            throw new IOException("No more images in the next page");
-        }
-
-        String newCompatibleJSON = "{ resources:" + resourcesJSONArray + " }";
-
-        return new JSONObject(newCompatibleJSON);
+    protected boolean pagesByPostId() {
+        return true;
     }
 
     @Override
-    protected List<String> getURLsFromJSON(JSONObject json) {
-        List<String> res = new ArrayList<>(100);
-        JSONArray jsonArray = json.getJSONArray("resources");
+    protected List<Post> parsePosts(URL pageURL, String body) {
+        JSONArray jsonArray = new JSONArray(body);
+        List<Post> res = new ArrayList<>(jsonArray.length());
         for (int i = 0; i < jsonArray.length(); i++) {
-            if (jsonArray.getJSONObject(i).has("file_url")) {
-                res.add(jsonArray.getJSONObject(i).getString("file_url"));
-            }
+            JSONObject post = jsonArray.getJSONObject(i);
+            res.add(new Post(String.valueOf(post.getLong("id")), post.optString("file_url", null)));
         }
         return res;
     }
@@ -90,11 +72,6 @@ public class DanbooruRipper extends AbstractJSONRipper {
         throw new MalformedURLException("Expected booru URL format: " + getDomain() + "/posts?tags=searchterm - got " + url + " instead");
     }
 
-    @Override
-    protected void downloadURL(URL url, int index) {
-        addURLToDownload(url, getPrefix(index));
-    }
-
     private String getTag(URL url) throws MalformedURLException {
         gidPattern = Pattern.compile("https?://danbooru.donmai.us/(posts)?.*([?&]tags=([a-zA-Z0-9$_.+!*'(),%-]+))(&|(#.*)?$)");
         Matcher m = gidPattern.matcher(url.toExternalForm());
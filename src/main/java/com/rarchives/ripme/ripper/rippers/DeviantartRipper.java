@@ -1,7 +1,6 @@
 package com.rarchives.ripme.ripper.rippers;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
@@ -90,7 +89,6 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 	private boolean usingCatPath = false;
 	private int downloadCount = 0;
 	private Map<String, String> cookies = new HashMap<String, String>();
-	private DownloadThreadPool deviantartThreadPool = new DownloadThreadPool("deviantart");
 	private ArrayList<String> names = new ArrayList<String>();
 
 	List<String> allowedCookies = Arrays.asList("agegate_state", "userinfo", "auth", "auth_secure");
@@ -102,11 +100,6 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 	private final String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:65.0) Gecko/20100101 Firefox/65.0";
 	private final String utilsKey = "DeviantartLogin.cookies"; //for config file
 
-	@Override
-	public DownloadThreadPool getThreadPool() {
-		return deviantartThreadPool;
-	}
-
 	public DeviantartRipper(URL url) throws IOException {
 		super(url);
 	}
@@ -279,7 +272,7 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 	}
 
 	/**
-	 * Starts new Thread to find download link + filename + filetype
+	 * Queues the page to find download link + filename + filetype
 	 * 
 	 * @param url The URL to an image site.
 	 */
@@ -296,9 +289,7 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 			e.printStackTrace();
 		}
 
-		// Start Thread and add to pool.
-		DeviantartImageThread t = new DeviantartImageThread(url);
-		deviantartThreadPool.addThread(t);
+		resolvePage(url, page -> new DeviantartImagePage(page).getFullSizeURL());
 
 	}
 
@@ -518,18 +509,13 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 	 * @author MrPlaygon
 	 *
 	 */
-	private class DeviantartImageThread extends Thread {
+	private class DeviantartImagePage {
 		private URL url;
 
-		public DeviantartImageThread(URL url) {
+		public DeviantartImagePage(URL url) {
 			this.url = url;
 		}
 
-		@Override
-		public void run() {
-			getFullSizeURL();
-		}
-
 		/**
 		 * Get URL to Artwork and return fullsize URL with file ending.
 		 * 
@@ -553,14 +539,17 @@ public class DeviantartRipper extends AbstractHTMLRipper {
 				String title = doc.select("a.title").first().html();
 				title = title.replaceAll("[^a-zA-Z0-9\\.\\-]", "_").toLowerCase();
 
-				int counter = 1; // For images with same name add _X (X = number)
-				if (names.contains(title)) {
-					while (names.contains(title + "_" + counter)) {
-						counter++;
+				// Pages are resolved in parallel
+				synchronized (names) {
+					int counter = 1; // For images with same name add _X (X = number)
+					if (names.contains(title)) {
+						while (names.contains(title + "_" + counter)) {
+							counter++;
+						}
+						title = title + "_" + counter;
 					}
-					title = title + "_" + counter;
+					names.add(title);
 				}
-				names.add(title);
 
 				// Check for download button
 				Element downloadButton = null;
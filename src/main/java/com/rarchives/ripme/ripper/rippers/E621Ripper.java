@@ -1,11 +1,9 @@
 package com.rarchives.ripme.ripper.rippers;
 
-import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
+import com.rarchives.ripme.ripper.AbstractBooruRipper;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.RipUtils;
 import com.rarchives.ripme.utils.Utils;
-import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 
 import java.io.IOException;
@@ -18,17 +16,12 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 
 
-public class E621Ripper extends AbstractHTMLRipper {
-    private static final Logger logger = LogManager.getLogger(E621Ripper.class);
-
+public class E621Ripper extends AbstractBooruRipper {
     private static Pattern gidPattern = null;
     private static Pattern gidPattern2 = null;
     private static Pattern gidPatternPool = null;
@@ -36,7 +29,8 @@ public class E621Ripper extends AbstractHTMLRipper {
     private static Pattern gidPatternNew = null;
     private static Pattern gidPatternPoolNew = null;
 
-    private DownloadThreadPool e621ThreadPool = new DownloadThreadPool("e621");
+    // Largest page the API serves
+    private static final int PAGE_SIZE = 320;
 
     private Map<String, String> cookies = new HashMap<String, String>();
     private String userAgent = USER_AGENT;
@@ -58,22 +52,9 @@ public class E621Ripper extends AbstractHTMLRipper {
         
     }
 
-    private void warnAboutBlacklist(Document page) {
-        if(!page.select("div.hidden-posts-notice").isEmpty()) 
-            sendUpdate(STATUS.DOWNLOAD_WARN, "Some posts are blacklisted. Consider logging in. Search for \"e621\" in this wiki page: https://github.com/RipMeApp/ripme/wiki/Config-options");
-    }
-
-    private Document getDocument(String url, int retries) throws IOException {
-        return Http.url(url).userAgent(userAgent).retries(retries).cookies(cookies).get();
-    }
-
-    private Document getDocument(String url) throws IOException {
-        return getDocument(url, 1);
-    }
-
     @Override
-    public DownloadThreadPool getThreadPool() {
-        return e621ThreadPool;
+    protected Http request(URL url) {
+        return Http.url(url).ignoreContentType().userAgent(userAgent).cookies(cookies);
     }
 
     @Override
@@ -87,46 +68,42 @@ public class E621Ripper extends AbstractHTMLRipper {
     }
 
     @Override
-    public Document getFirstPage() throws IOException {
+    public void rip() throws IOException {
+        // Before the first request, whether the rip starts over or resumes from a checkpoint
         loadConfig();
-        Document page;
-        if (url.getPath().startsWith("/pool"))
-            page = getDocument("https://e621.net/pools/" + getTerm(url));
-        else
-            page = getDocument("https://e621.net/posts?tags=" + getTerm(url));
-        
-        warnAboutBlacklist(page);
-        return page;
+        super.rip();
     }
 
     @Override
-    public List<String> getURLsFromPage(Document page) {
-        Elements elements = page.select("article > a");
-        List<String> res = new ArrayList<>();
-
-        for (Element e : elements) {
-            if (!e.attr("href").isEmpty()) {
-                res.add(e.attr("abs:href"));
-            }
-        }
-
-        return res;
+    protected URL getPostsURL(int page, String beforeId) throws MalformedURLException {
+        // Pools are searched through their pool: tag, in upload order
+        String tags = url.getPath().startsWith("/pool") ? "pool:" + getTerm(url) + "+order:id" : getTerm(url);
+        return new URL("https://e621.net/posts.json?limit=" + PAGE_SIZE
+                + "&page=" + (beforeId == null ? "1" : "b" + beforeId) + "&tags=" + tags);
     }
 
     @Override
-    public Document getNextPage(Document page) throws IOException {
-        warnAboutBlacklist(page);
-        if (!page.select("a#paginator-next").isEmpty()) {
-            return getDocument(page.select("a#paginator-next").attr("abs:href"));
-        } else {
-            throw new IOException("No more pages.");
-        }
+    protected boolean pagesByPostId() {
+        // "b<id>" pages go by descending id, so order:id searches use page numbers
+        return !url.getPath().startsWith("/pool");
     }
 
     @Override
-    public void downloadURL(final URL url, int index) {
-        // addURLToDownload(url, getPrefix(index));
-        e621ThreadPool.addThread(new E621FileThread(url, getPrefix(index)));
+    protected List<Post> parsePosts(URL pageURL, String body) {
+        JSONArray jsonPosts = new JSONObject(body).getJSONArray("posts");
+        List<Post> posts = new ArrayList<>(jsonPosts.length());
+        boolean hidden = false;
+        for (int i = 0; i < jsonPosts.length(); i++) {
+            JSONObject post = jsonPosts.getJSONObject(i);
+            JSONObject file = post.getJSONObject("file");
+            String fileURL = file.isNull("url") ? null : file.getString("url");
+            hidden |= fileURL == null;
+            posts.add(new Post(String.valueOf(post.getLong("id")), fileURL));
+        }
+        if (hidden) {
+            sendUpdate(STATUS.DOWNLOAD_WARN, "Some posts are blacklisted. Consider logging in. Search for \"e621\" in this wiki page: https://github.com/RipMeApp/ripme/wiki/Config-options");
+        }
+        return posts;
     }
 
     private String getTerm(URL url) throws MalformedURLException {
@@ -192,52 +169,4 @@ public class E621Ripper extends AbstractHTMLRipper {
 
         return url;
     }
-
-    public class E621FileThread extends Thread {
-
-        private URL url;
-        private String index;
-
-        public E621FileThread(URL url, String index) {
-            this.url = url;
-            this.index = index;
-        }
-
-        @Override
-        public void run() {
-            try {
-                String fullSizedImage = getFullSizedImage(url);
-                if (fullSizedImage != null && !fullSizedImage.equals("")) {
-                    addURLToDownload(new URL(fullSizedImage), index);
-                }
-            } catch (IOException e) {
-                logger.error("Unable to get full sized image from " + url);
-            }
-        }
-
-        private String getFullSizedImage(URL imageURL) throws IOException {
-            Document page = getDocument(imageURL.toExternalForm(), 3);
-            /*Elements video = page.select("video > source");
-            Elements flash = page.select("embed");
-            Elements image = page.select("a#highres");
-            if (video.size() > 0) {
-                return video.attr("src");
-            } else if (flash.size() > 0) {
-                return flash.attr("src");
-            } else if (image.size() > 0) {
-                return image.attr("href");
-            } else {
-                throw new IOException();
-            }*/
-
-            if (!page.select("div#image-download-link > a").isEmpty()) {
-                return page.select("div#image-download-link > a").attr("abs:href");
-            } else {
-                if(!page.select("#blacklist-box").isEmpty())
-                    sendUpdate(RipStatusMessage.STATUS.RIP_ERRORED, "Cannot download image - blocked by blacklist. Consider logging in. Search for \"e621\" in this wiki page: https://github.com/RipMeApp/ripme/wiki/Config-options");
-                throw new IOException();
-            }
-        }
-
-    }
 }
@@ -5,8 +5,13 @@ import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.RetryPolicy;
 import com.rarchives.ripme.utils.RipUtils;
 import com.rarchives.ripme.utils.Utils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.jsoup.Connection.Method;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -28,6 +33,11 @@ public class EHentaiRipper extends AbstractHTMLRipper {
     private static final int PAGE_SLEEP_TIME = 3000;
     private static final int IMAGE_SLEEP_TIME = 1500;
     private static final int IP_BLOCK_SLEEP_TIME = 60 * 1000;
+    private static final int API_SLEEP_TIME = 300;
+    private static final String API_URL = "https://api.e-hentai.org/api.php";
+    // Image pages: https://e-hentai.org/s/<imgkey>/<gid>-<page>
+    private static final Pattern IMAGE_PAGE_PATTERN = Pattern.compile("^https?://e-hentai\\.org/s/([0-9a-f]+)/([0-9]+)-([0-9]+)/?$");
+    private static final Pattern SHOWKEY_PATTERN = Pattern.compile("var showkey\\s*=\\s*\"([^\"]+)\"");
     private static final Map<String, String> cookies = new HashMap<>();
 
     static {
@@ -36,6 +46,9 @@ public class EHentaiRipper extends AbstractHTMLRipper {
     }
 
     private String lastURL = null;
+    // Key for the showpage API, found on the first image page
+    private volatile String showKey = null;
+    private boolean showKeyRequested = false;
     // Thread pool for finding direct image links from "image" pages (html)
     private final DownloadThreadPool ehentaiThreadPool = new DownloadThreadPool("ehentai");
     // Current HTML document
@@ -115,10 +128,10 @@ public class EHentaiRipper extends AbstractHTMLRipper {
                 }
                 LOGGER.warn("Hit rate limit while loading " + url + ", sleeping for " + IP_BLOCK_SLEEP_TIME + "ms, " + retries + " retries remaining");
                 retries--;
-                try {
-                    Thread.sleep(IP_BLOCK_SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    throw new IOException("Interrupted while waiting for rate limit to subside");
+                // A ban page counts as a failed request, so other threads back off this host too
+                RetryPolicy.failed(url);
+                if (!RetryPolicy.backoff(url, 3 - retries, IP_BLOCK_SLEEP_TIME)) {
+                    throw new IOException("Interrupted or out of retries while waiting for rate limit to subside");
                 }
             } else {
                 return doc;
@@ -192,7 +205,27 @@ public class EHentaiRipper extends AbstractHTMLRipper {
 
     @Override
     public void downloadURL(URL url, int index) {
+        Matcher m = IMAGE_PAGE_PATTERN.matcher(url.toExternalForm());
+        if (showKey != null && m.matches()) {
+            // One small API call on this thread instead of an image page per image
+            try {
+                String imgsrc = getImageURLFromAPI(m.group(2), m.group(3), m.group(1));
+                if (imgsrc != null) {
+                    addImageToDownload(imgsrc, index, this.workingDir);
+                    sleep(API_SLEEP_TIME);
+                    return;
+                }
+            } catch (IOException | JSONException e) {
+                LOGGER.warn("Unable to load {} through the API, falling back to the image page", url, e);
+            }
+        }
         EHentaiImageThread t = new EHentaiImageThread(url, index, this.workingDir);
+        if (showKey == null && m.matches() && !showKeyRequested) {
+            // The first image page is loaded here to get the key for the API
+            showKeyRequested = true;
+            t.run();
+            return;
+        }
         ehentaiThreadPool.addThread(t);
         try {
             Thread.sleep(IMAGE_SLEEP_TIME);
@@ -201,18 +234,65 @@ public class EHentaiRipper extends AbstractHTMLRipper {
         }
     }
 
+    /**
+     * Asks the API for an image page, given the showkey found on any image page of the gallery.
+     * @return
+     *      The image URL, or null if the response has none.
+     */
+    private String getImageURLFromAPI(String gid, String page, String imgKey) throws IOException {
+        JSONObject request = new JSONObject();
+        request.put("method", "showpage");
+        request.put("gid", Long.parseLong(gid));
+        request.put("page", Integer.parseInt(page));
+        request.put("imgkey", imgKey);
+        request.put("showkey", showKey);
+        JSONObject json = Http.url(API_URL)
+                .referrer(this.url)
+                .cookies(cookies)
+                .header("Content-Type", "application/json")
+                .requestBody(request.toString())
+                .method(Method.POST)
+                .getJSON();
+        if (json.has("error") || !json.has("i3")) {
+            LOGGER.warn("API error for page {}: {}", page, json.optString("error"));
+            return null;
+        }
+        String imgsrc = Jsoup.parse(json.getString("i3")).select("img#img").attr("src");
+        return imgsrc.isEmpty() ? null : imgsrc;
+    }
+
+    private void addImageToDownload(String imgsrc, int index, Path workingDir) throws MalformedURLException {
+        Pattern p = Pattern.compile("^http://.*/ehg/image.php.*&n=([^&]+).*$");
+        Matcher m = p.matcher(imgsrc);
+        if (m.matches()) {
+            // Manually discover filename from URL
+            String savePath = workingDir + "/";
+            if (Utils.getConfigBoolean("download.save_order", true)) {
+                savePath += String.format("%03d_", index);
+            }
+            savePath += m.group(1);
+            addURLToDownload(new URL(imgsrc), Paths.get(savePath));
+        } else {
+            // Provide prefix and let the AbstractRipper "guess" the filename
+            String prefix = "";
+            if (Utils.getConfigBoolean("download.save_order", true)) {
+                prefix = String.format("%03d_", index);
+            }
+            addURLToDownload(new URL(imgsrc), prefix);
+        }
+    }
+
     /**
      * Helper class to find and download images found on "image" pages
      * <p>
      * Handles case when site has IP-banned the user.
      */
-    private class EHentaiImageThread extends Thread {
+    private class EHentaiImageThread implements Runnable {
         private final URL url;
         private final int index;
         private final Path workingDir;
 
         EHentaiImageThread(URL url, int index, Path workingDir) {
-            super();
             this.url = url;
             this.index = index;
             this.workingDir = workingDir;
@@ -226,6 +306,12 @@ public class EHentaiRipper extends AbstractHTMLRipper {
         private void fetchImage() {
             try {
                 Document doc = getPageWithRetries(this.url);
+                if (showKey == null) {
+                    Matcher keyMatcher = SHOWKEY_PATTERN.matcher(doc.html());
+                    if (keyMatcher.find()) {
+                        showKey = keyMatcher.group(1);
+                    }
+                }
 
                 // Find image
                 Elements images = doc.select(".sni > a > img");
@@ -240,24 +326,7 @@ public class EHentaiRipper extends AbstractHTMLRipper {
                 Element image = images.first();
                 String imgsrc = image.attr("src");
                 LOGGER.info("Found URL " + imgsrc + " via " + images.get(0));
-                Pattern p = Pattern.compile("^http://.*/ehg/image.php.*&n=([^&]+).*$");
-                Matcher m = p.matcher(imgsrc);
-                if (m.matches()) {
-                    // Manually discover filename from URL
-                    String savePath = this.workingDir + "/";
-                    if (Utils.getConfigBoolean("download.save_order", true)) {
-                        savePath += String.format("%03d_", index);
-                    }
-                    savePath += m.group(1);
-                    addURLToDownload(new URL(imgsrc), Paths.get(savePath));
-                } else {
-                    // Provide prefix and let the AbstractRipper "guess" the filename
-                    String prefix = "";
-                    if (Utils.getConfigBoolean("download.save_order", true)) {
-                        prefix = String.format("%03d_", index);
-                    }
-                    addURLToDownload(new URL(imgsrc), prefix);
-                }
+                addImageToDownload(imgsrc, index, workingDir);
             } catch (IOException e) {
                 LOGGER.error("[!] Exception while loading/parsing " + this.url, e);
             }
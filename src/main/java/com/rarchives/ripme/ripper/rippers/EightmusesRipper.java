@@ -18,6 +18,7 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
+import com.rarchives.ripme.ripper.ItemSink;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
 
@@ -28,6 +29,8 @@ public class EightmusesRipper extends AbstractHTMLRipper {
     // TODO put up a wiki page on using maps to store titles
     // the map for storing the title of each album when downloading sub albums
     private Map<URL,String> urlTitles = new HashMap<>();
+    // the map for storing the per album prefix of each image when downloading sub albums
+    private Map<URL,String> urlPrefixes = new HashMap<>();
 
     private Boolean rippingSubalbums = false;
 
@@ -35,11 +38,6 @@ public class EightmusesRipper extends AbstractHTMLRipper {
         super(url);
     }
 
-    @Override
-    public boolean hasASAPRipping() {
-        return true;
-    }
-
     @Override
     public String getHost() {
         return "8muses";
@@ -87,8 +85,23 @@ public class EightmusesRipper extends AbstractHTMLRipper {
     }
 
     @Override
-    public List<String> getURLsFromPage(Document page) {
+    public List<String> getURLsFromPage(Document page) throws IOException {
         List<String> imageURLs = new ArrayList<>();
+        emitURLsFromPage(page, imageURLs::add);
+        return imageURLs;
+    }
+
+    @Override
+    protected void emitURLsFromPage(Document page, ItemSink sink) throws IOException {
+        emitURLsFromAlbum(page, sink);
+    }
+
+    /**
+     * Emits the images of an album page, descending into sub albums as they are found.
+     * @return
+     *      False if the sink asked to stop.
+     */
+    private boolean emitURLsFromAlbum(Document page, ItemSink sink) throws IOException {
         int x = 1;
         // This contains the thumbnails of all images on the page
         Elements pageImages = page.getElementsByClass("c-tile");
@@ -101,8 +114,9 @@ public class EightmusesRipper extends AbstractHTMLRipper {
                     sendUpdate(STATUS.LOADING_RESOURCE, subUrl);
                     Document subPage = Http.url(subUrl).get();
                     // If the page below this one has images this line will download them
-                    List<String> subalbumImages = getURLsFromPage(subPage);
-                    LOGGER.info("Found " + subalbumImages.size() + " images in subalbum");
+                    if (!emitURLsFromAlbum(subPage, sink)) {
+                        return false;
+                    }
                 } catch (IOException e) {
                     LOGGER.warn("Error while loading subalbum " + subUrl, e);
                 }
@@ -110,7 +124,7 @@ public class EightmusesRipper extends AbstractHTMLRipper {
             } else if (thumb.attr("href").contains("/comics/picture/")) {
                 LOGGER.info("This page is a album");
                 LOGGER.info("Ripping image");
-                if (super.isStopped()) break;
+                if (super.isStopped()) return false;
                 // Find thumbnail image source
                 String image = null;
                 if (thumb.hasAttr("data-cfsrc")) {
@@ -120,18 +134,20 @@ public class EightmusesRipper extends AbstractHTMLRipper {
                     String rawJson = deobfuscateJSON(page.select("script#ractive-public").html()
                             .replaceAll("&gt;", ">").replaceAll("&lt;", "<").replace("&amp;", "&"));
                     JSONObject json = new JSONObject(rawJson);
+                    String subdir = getSubdir(page.select("title").text());
                     try {
                         for (int i = 0; i != json.getJSONArray("pictures").length(); i++) {
                             image = "https://www.8muses.com/image/fl/" + json.getJSONArray("pictures").getJSONObject(i).getString("publicUri");
                             URL imageUrl = new URL(image);
-                            addURLToDownload(imageUrl, getPrefixShort(x), getSubdir(page.select("title").text()), this.url.toExternalForm(), cookies, "", null, true);
+                            urlTitles.put(imageUrl, subdir);
+                            urlPrefixes.put(imageUrl, getPrefixShort(x));
                             // X is our page index
                             x++;
-                            if (isThisATest()) {
-                                break;
+                            if (!sink.accept(image)) {
+                                return false;
                             }
                         }
-                        return imageURLs;
+                        return true;
                     } catch (MalformedURLException e) {
                         LOGGER.error("\"" + image + "\" is malformed");
                     }
@@ -140,12 +156,13 @@ public class EightmusesRipper extends AbstractHTMLRipper {
                     // Not hosted on 8muses.
                     continue;
                 }
-                imageURLs.add(image);
-                if (isThisATest()) break;
+                if (!sink.accept(image)) {
+                    return false;
+                }
             }
 
         }
-        return imageURLs;
+        return true;
     }
 
     public String getSubdir(String rawHref) {
@@ -163,7 +180,14 @@ public class EightmusesRipper extends AbstractHTMLRipper {
 
     @Override
     public void downloadURL(URL url, int index) {
-        addURLToDownload(url, getPrefix(index), "", this.url.toExternalForm(), cookies);
+        String subdir = urlTitles.remove(url);
+        String prefix = urlPrefixes.remove(url);
+        if (subdir != null) {
+            // Image of a (sub) album, numbered within its album
+            addURLToDownload(url, prefix, subdir, this.url.toExternalForm(), cookies, "", null, true);
+        } else {
+            addURLToDownload(url, getPrefix(index), "", this.url.toExternalForm(), cookies);
+        }
     }
 
     public String getPrefixLong(int index) {
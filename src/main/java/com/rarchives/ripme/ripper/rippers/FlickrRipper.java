@@ -14,14 +14,12 @@ import org.json.JSONException;
 import org.jsoup.nodes.Document;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 import org.jsoup.nodes.Element;
 
 public class FlickrRipper extends AbstractHTMLRipper {
 
     private Document albumDoc = null;
-    private final DownloadThreadPool flickrThreadPool;
 
     private enum UrlType {
         USER,
@@ -38,11 +36,6 @@ public class FlickrRipper extends AbstractHTMLRipper {
         }
     }
 
-    @Override
-    public DownloadThreadPool getThreadPool() {
-        return flickrThreadPool;
-    }
-
     @Override
     public boolean hasASAPRipping() {
         return true;
@@ -50,7 +43,6 @@ public class FlickrRipper extends AbstractHTMLRipper {
 
     public FlickrRipper(URL url) throws IOException {
         super(url);
-        flickrThreadPool = new DownloadThreadPool();
     }
 
     @Override
@@ -1,7 +1,6 @@
 package com.rarchives.ripme.ripper.rippers;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 
 import org.jsoup.Connection.Response;
@@ -26,7 +25,6 @@ public class HqpornerRipper extends AbstractHTMLRipper {
 	private Pattern p1 = Pattern.compile("https?://hqporner.com/hdporn/([a-zA-Z0-9_-]*).html/?$"); // video pattern.
 	private Pattern p2 = Pattern.compile("https://hqporner.com/([a-zA-Z0-9/_-]+)"); // category/top/actress/studio pattern.
 	private Pattern p3 = Pattern.compile("https?://[A-Za-z0-9/.-_]+\\.mp4"); // to match links ending with .mp4
-	private DownloadThreadPool hqpornerThreadPool = new DownloadThreadPool("hqpornerThreadPool");
 	private String subdirectory = "";
 
 	public HqpornerRipper(URL url) throws IOException {
@@ -108,7 +106,8 @@ public class HqpornerRipper extends AbstractHTMLRipper {
 
 	@Override
 	public void downloadURL(URL url, int index) {
-		hqpornerThreadPool.addThread(new HqpornerDownloadThread(url, index, subdirectory));
+		String videoSubdirectory = subdirectory;
+		resolvePage(url, page -> new HqpornerVideoPage(page, videoSubdirectory).fetchVideo());
 	}
 
 	@Override
@@ -120,33 +119,24 @@ public class HqpornerRipper extends AbstractHTMLRipper {
 		throw new IOException("No next page found.");
 	}
 
-	@Override
-	public DownloadThreadPool getThreadPool() {
-		return hqpornerThreadPool;
-	}
-
 	@Override
 	public boolean useByteProgessBar() {
 		return true;
 	}
 
-	private class HqpornerDownloadThread extends Thread {
+	/**
+	 * Finds and downloads the video of a video page, wherever it is hosted.
+	 */
+	private class HqpornerVideoPage {
 
 		private URL hqpornerVideoPageUrl;
-		//private int index;
 		private String subdirectory;
 
-		public HqpornerDownloadThread(URL url, int index, String subdirectory) {
+		public HqpornerVideoPage(URL url, String subdirectory) {
 			this.hqpornerVideoPageUrl = url;
-			//this.index = index;
 			this.subdirectory = subdirectory;
 		}
 
-		@Override
-		public void run() {
-			fetchVideo();
-		}
-
 		public void fetchVideo() {
 			try {
 
@@ -278,7 +268,7 @@ public class HqpornerRipper extends AbstractHTMLRipper {
 			}
 		}
 
-	}// class HqpornerDownloadThread
+	}// class HqpornerVideoPage
 
 	public String getBestQualityLink(List<String> list) {
 		// return link with the highest quality subsubstring. Keeping it simple for now. 
@@ -1,7 +1,6 @@
 package com.rarchives.ripme.ripper.rippers;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
 import java.io.IOException;
@@ -22,13 +21,6 @@ public class ImagebamRipper extends AbstractHTMLRipper {
     // Current HTML document
     private Document albumDoc = null;
 
-    // Thread pool for finding direct image links from "image" pages (html)
-    private DownloadThreadPool imagebamThreadPool = new DownloadThreadPool("imagebam");
-    @Override
-    public DownloadThreadPool getThreadPool() {
-        return imagebamThreadPool;
-    }
-
     public ImagebamRipper(URL url) throws IOException {
         super(url);
     }
@@ -79,6 +71,11 @@ public class ImagebamRipper extends AbstractHTMLRipper {
         return Http.url(nextUrl).get();
     }
 
+    @Override
+    protected boolean hasCheckpointSupport() {
+        return true;
+    }
+
     @Override
     public List<String> getURLsFromPage(Document doc) {
         List<String> imageURLs = new ArrayList<>();
@@ -90,9 +87,12 @@ public class ImagebamRipper extends AbstractHTMLRipper {
 
     @Override
     public void downloadURL(URL url, int index) {
-        ImagebamImageThread t = new ImagebamImageThread(url, index);
-        imagebamThreadPool.addThread(t);
-        sleep(500);
+        resolvePage(url, page -> fetchImage(page, index));
+    }
+
+    @Override
+    protected long getResolveInterval() {
+        return 500;
     }
 
     @Override
@@ -113,56 +113,29 @@ public class ImagebamRipper extends AbstractHTMLRipper {
     }
 
     /**
-     * Helper class to find and download images found on "image" pages
-     *
-     * Handles case when site has IP-banned the user.
+     * Rips useful image from "image page"
      */
-    private class ImagebamImageThread extends Thread {
-        private URL url; //link to "image page"
-        private int index; //index in album
-
-        ImagebamImageThread(URL url, int index) {
-            super();
-            this.url = url;
-            this.index = index;
+    private void fetchImage(URL url, int index) throws IOException {
+        Document doc = Http.url(url).get();
+        // Find image
+        String imgsrc = "";//initialize, so no NullPointerExceptions should ever happen.
+        Elements elem = doc.select("img[class*=main-image]");
+        if ((elem != null) && (elem.size() > 0)) {
+            imgsrc = elem.first().attr("src");
         }
 
-        @Override
-        public void run() {
-            fetchImage();
+        //for debug, or something goes wrong.
+        if (imgsrc.isEmpty()) {
+            LOGGER.warn("Image not found at {}", url);
+            return;
         }
-        
-        /**
-         * Rips useful image from "image page"
-         */
-        private void fetchImage() {
-            try {
-                Document doc = Http.url(url).get();
-                // Find image
-                Elements metaTags = doc.getElementsByTag("meta");
-                
-                String imgsrc = "";//initialize, so no NullPointerExceptions should ever happen.
-                Elements elem = doc.select("img[class*=main-image]");
-                if ((elem != null) && (elem.size() > 0)) {
-                    imgsrc = elem.first().attr("src");
-                }
-               
-                //for debug, or something goes wrong.
-                if (imgsrc.isEmpty()) {
-                    LOGGER.warn("Image not found at " + this.url);
-                    return;
-                }
-               
-                // Provide prefix and let the AbstractRipper "guess" the filename
-                String prefix = "";
-                if (Utils.getConfigBoolean("download.save_order", true)) {
-                    prefix = String.format("%03d_", index);
-                }
-                
-                addURLToDownload(new URL(imgsrc), prefix);
-            } catch (IOException e) {
-                LOGGER.error("[!] Exception while loading/parsing " + this.url, e);
-            }
+
+        // Provide prefix and let the AbstractRipper "guess" the filename
+        String prefix = "";
+        if (Utils.getConfigBoolean("download.save_order", true)) {
+            prefix = String.format("%03d_", index);
         }
+
+        addURLToDownload(new URL(imgsrc), prefix);
     }
 }
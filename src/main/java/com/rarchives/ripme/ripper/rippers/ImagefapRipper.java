@@ -14,6 +14,7 @@ import org.jsoup.nodes.Element;
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.RetryPolicy;
 
 public class ImagefapRipper extends AbstractHTMLRipper {
 
@@ -213,10 +214,10 @@ public class ImagefapRipper extends AbstractHTMLRipper {
                 LOGGER.warn(message);
                 sendUpdate(STATUS.DOWNLOAD_WARN, message);
                 retries--;
-                try {
-                    Thread.sleep(IP_BLOCK_SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    throw new IOException("Interrupted while waiting for rate limit to subside");
+                // A ban page counts as a failed request, so other threads back off this host too
+                RetryPolicy.failed(url);
+                if (!RetryPolicy.backoff(url, RETRY_LIMIT - retries, IP_BLOCK_SLEEP_TIME)) {
+                    throw new IOException("Interrupted or out of retries while waiting for rate limit to subside");
                 }
             }
             else {
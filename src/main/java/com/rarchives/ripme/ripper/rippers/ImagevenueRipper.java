@@ -13,19 +13,11 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
 
 public class ImagevenueRipper extends AbstractHTMLRipper {
 
-    // Thread pool for finding direct image links from "image" pages (html)
-    private DownloadThreadPool imagevenueThreadPool = new DownloadThreadPool("imagevenue");
-    @Override
-    public DownloadThreadPool getThreadPool() {
-        return imagevenueThreadPool;
-    }
-
     public ImagevenueRipper(URL url) throws IOException {
         super(url);
     }
@@ -70,53 +62,30 @@ public class ImagevenueRipper extends AbstractHTMLRipper {
     }
 
     public void downloadURL(URL url, int index) {
-        ImagevenueImageThread t = new ImagevenueImageThread(url, index);
-        imagevenueThreadPool.addThread(t);
+        resolvePage(url, page -> fetchImage(page, index));
     }
 
     /**
-     * Helper class to find and download images found on "image" pages
-     *
-     * Handles case when site has IP-banned the user.
+     * Finds and downloads the image of an "image" page
      */
-    private class ImagevenueImageThread extends Thread {
-        private URL url;
-        private int index;
-
-        ImagevenueImageThread(URL url, int index) {
-            super();
-            this.url = url;
-            this.index = index;
+    private void fetchImage(URL url, int index) throws IOException {
+        Document doc = Http.url(url)
+                           .retries(3)
+                           .get();
+        // Find image
+        Elements images = doc.select("a > img");
+        if (images.isEmpty()) {
+            LOGGER.warn("Image not found at {}", url);
+            return;
         }
-
-        @Override
-        public void run() {
-            fetchImage();
-        }
-
-        private void fetchImage() {
-            try {
-                Document doc = Http.url(url)
-                                   .retries(3)
-                                   .get();
-                // Find image
-                Elements images = doc.select("a > img");
-                if (images.isEmpty()) {
-                    LOGGER.warn("Image not found at " + this.url);
-                    return;
-                }
-                Element image = images.first();
-                String imgsrc = image.attr("src");
-                imgsrc = "http://" + this.url.getHost() + "/" + imgsrc;
-                // Provide prefix and let the AbstractRipper "guess" the filename
-                String prefix = "";
-                if (Utils.getConfigBoolean("download.save_order", true)) {
-                    prefix = String.format("%03d_", index);
-                }
-                addURLToDownload(new URL(imgsrc), prefix);
-            } catch (IOException e) {
-                LOGGER.error("[!] Exception while loading/parsing " + this.url, e);
-            }
+        Element image = images.first();
+        String imgsrc = image.attr("src");
+        imgsrc = "http://" + url.getHost() + "/" + imgsrc;
+        // Provide prefix and let the AbstractRipper "guess" the filename
+        String prefix = "";
+        if (Utils.getConfigBoolean("download.save_order", true)) {
+            prefix = String.format("%03d_", index);
         }
+        addURLToDownload(new URL(imgsrc), prefix);
     }
-}
\ No newline at end of file
+}
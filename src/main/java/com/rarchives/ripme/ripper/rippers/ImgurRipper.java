@@ -6,7 +6,14 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +36,16 @@ public class ImgurRipper extends AlbumRipper {
     private static final String DOMAIN = "imgur.com",
                                 HOST   = "imgur";
 
-    private final int SLEEP_BETWEEN_ALBUMS;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    // Resolves the albums of user accounts, shared by all imgur rips
+    private static final ExecutorService albumLoader = Executors.newFixedThreadPool(
+            Math.max(1, Utils.getConfigInteger("imgur.threads", 3)), r -> {
+                Thread t = new Thread(r, "imgur-albums-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+    // When the next album or page request may be sent, shared by all imgur rips
+    private static long nextRequest = 0;
 
     private Document albumDoc;
 
@@ -47,7 +63,6 @@ public class ImgurRipper extends AlbumRipper {
 
     public ImgurRipper(URL url) throws IOException {
         super(url);
-        SLEEP_BETWEEN_ALBUMS = 1;
     }
 
     /**
@@ -193,25 +208,45 @@ public class ImgurRipper extends AlbumRipper {
     }
 
     private void ripAlbum(URL url, String subdirectory) throws IOException {
-        int index;
         this.sendUpdate(STATUS.LOADING_RESOURCE, url.toExternalForm());
-        index = 0;
-        ImgurAlbum album = getImgurAlbum(url);
+        queueAlbum(getImgurAlbum(url), subdirectory);
+    }
+
+    private void queueAlbum(ImgurAlbum album, String subdirectory) throws IOException {
+        int index = 0;
+        Path albumDir = workingDir;
+        if (subdirectory != null && !subdirectory.equals("")) {
+            albumDir = albumDir.resolve(subdirectory);
+        }
+        if (!Files.exists(albumDir)) {
+            Files.createDirectories(albumDir);
+        }
         for (ImgurImage imgurImage : album.images) {
             stopCheck();
-            Path saveAs = workingDir;
-            if (subdirectory != null && !subdirectory.equals("")) {
-                saveAs.resolve(subdirectory);
-            }
-            if (!Files.exists(saveAs)) {
-                Files.createDirectory(saveAs);
-            }
             index += 1;
+            String prefix = "";
             if (Utils.getConfigBoolean("download.save_order", true)) {
-                saveAs.resolve(String.format("%03d_", index));
+                prefix = String.format("%03d_", index);
             }
-            saveAs.resolve(imgurImage.getSaveAs().replaceAll("\\?\\d", ""));
-            addURLToDownload(imgurImage.url, saveAs);
+            addURLToDownload(imgurImage.url, albumDir.resolve(prefix + imgurImage.getSaveAs().replaceAll("\\?\\d", "")));
+        }
+    }
+
+    /**
+     * Waits until the next request to imgur may be sent, keeping all imgur rips to
+     * imgur.requests_per_second album and page requests.
+     */
+    private static void throttle() throws InterruptedException {
+        long interval = 1000 / Math.max(1, Utils.getConfigInteger("imgur.requests_per_second", 2));
+        long wait;
+        synchronized (ImgurRipper.class) {
+            long now = System.currentTimeMillis();
+            long sendAt = Math.max(now, nextRequest);
+            nextRequest = sendAt + interval;
+            wait = sendAt - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
         }
     }
 
@@ -356,19 +391,37 @@ public class ImgurRipper extends AlbumRipper {
         LOGGER.info("Retrieving " + url);
         sendUpdate(STATUS.LOADING_RESOURCE, url.toExternalForm());
         Document doc = Http.url(url).get();
+        // Albums resolve imgur.threads at a time, and are queued for download in account order as they come in
+        Map<String, Future<ImgurAlbum>> albums = new LinkedHashMap<>();
         for (Element album : doc.select("div.cover a")) {
-            stopCheck();
             if (!album.hasAttr("href")
                     || !album.attr("href").contains("imgur.com/a/")) {
                 continue;
             }
             String albumID = album.attr("href").substring(album.attr("href").lastIndexOf('/') + 1);
             URL albumURL = new URL("http:" + album.attr("href") + "/noscript");
-            try {
-                ripAlbum(albumURL, albumID);
-                Thread.sleep(SLEEP_BETWEEN_ALBUMS * 1000L);
-            } catch (Exception e) {
-                LOGGER.error("Error while ripping album: " + e.getMessage(), e);
+            albums.put(albumID, albumLoader.submit(() -> {
+                throttle();
+                sendUpdate(STATUS.LOADING_RESOURCE, albumURL.toExternalForm());
+                return getImgurAlbum(albumURL);
+            }));
+        }
+        try {
+            for (Map.Entry<String, Future<ImgurAlbum>> album : albums.entrySet()) {
+                stopCheck();
+                try {
+                    queueAlbum(album.getValue().get(), album.getKey());
+                } catch (ExecutionException e) {
+                    LOGGER.error("Error while ripping album: {}", e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading albums", e);
+                }
+            }
+        } finally {
+            // Stopped or interrupted, don't keep loading albums nobody will download
+            for (Future<ImgurAlbum> album : albums.values()) {
+                album.cancel(true);
             }
         }
     }
@@ -382,6 +435,7 @@ public class ImgurRipper extends AlbumRipper {
 
         while (true) {
             try {
+                throttle();
                 page++;
                 String jsonUrlWithParams = jsonUrl + "?sort=0&order=1&album=0&page=" + page + "&perPage=60";
                 JSONObject json = Http.url(jsonUrlWithParams).getJSON();
@@ -403,7 +457,6 @@ public class ImgurRipper extends AlbumRipper {
                 if (imagesFound >= imagesTotal) {
                     break;
                 }
-                Thread.sleep(1000);
             } catch (Exception e) {
                 LOGGER.error("Error while ripping user images: " + e.getMessage(), e);
                 break;
@@ -420,6 +473,12 @@ public class ImgurRipper extends AlbumRipper {
                 pageURL += "/";
             }
             pageURL += "page/" + page + "/miss?scrolled";
+            try {
+                throttle();
+            } catch (InterruptedException e) {
+                LOGGER.error("Interrupted while waiting to load next page: ", e);
+                break;
+            }
             LOGGER.info("    Retrieving " + pageURL);
             Document doc = Http.url(pageURL).get();
             Elements imgs = doc.select(".post img");
@@ -438,12 +497,6 @@ public class ImgurRipper extends AlbumRipper {
                 break;
             }
             page++;
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                LOGGER.error("Interrupted while waiting to load next album: ", e);
-                break;
-            }
         }
     }
 
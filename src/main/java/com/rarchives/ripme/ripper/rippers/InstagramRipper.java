@@ -9,6 +9,7 @@ import com.rarchives.ripme.ripper.AbstractJSONRipper;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
@@ -17,11 +18,23 @@ import org.jsoup.nodes.Element;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -37,13 +50,33 @@ import static java.lang.String.format;
 // Available configuration options:
 // instagram.download_images_only - use to skip video links
 // instagram.session_id - should be set for stories and private accounts (look for sessionid cookie)
+// instagram.threads - number of posts to load details of at once (default 4)
+// instagram.hash_ttl - hours to keep query hashes found in instagram's scripts (default 24)
 public class InstagramRipper extends AbstractJSONRipper {
 
-    private String qHash;
+    private static final String HASH_CACHE_FILE = "instagram_hashes.json";
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    // Loads post details, and the next page of posts while those load
+    private static final ExecutorService loader = Executors.newFixedThreadPool(
+            Math.max(1, Utils.getConfigInteger("instagram.threads", 4)) + 1, r -> {
+                Thread t = new Thread(r, "instagram-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private volatile String qHash;
+    // Set if qHash came from the cache, which is looked up again if the hash fails
+    private volatile boolean qHashCached;
+    private Document document;
     private Map<String, String> cookies = new HashMap<>();
     private String idString;
     private List<String> itemPrefixes = new ArrayList<>();
-    private List<String> failedItems = new ArrayList<>();
+    private List<String> failedItems = Collections.synchronizedList(new ArrayList<>());
+    // shortcode -> video URL from the post page, see getVideoUrlFromPage
+    private final Map<String, String> videoUrlsFromPage = new ConcurrentHashMap<>();
+    // Next page of posts, loading in the background, and the page it follows
+    private Future<JSONObject> nextPage = null;
+    private JSONObject nextPageSource = null;
 
     private boolean hashtagRip;
     private boolean taggedRip;
@@ -139,7 +172,7 @@ public class InstagramRipper extends AbstractJSONRipper {
     @Override
     public JSONObject getFirstPage() throws IOException {
         setAuthCookie();
-        Document document = Http.url(url).cookies(cookies).response().parse();
+        document = Http.url(url).cookies(cookies).response().parse();
         qHash = getQhash(document);
         JSONObject jsonObject = getJsonObjectFromDoc(document);
         String hashtagNamePath = "entry_data.TagPage[0].graphql.hashtag.name";
@@ -162,10 +195,17 @@ public class InstagramRipper extends AbstractJSONRipper {
     }
 
     // Query hash is used for graphql requests
+    // Hashes are cached on disk, and only looked up in the scripts again once stale or failing
     private String getQhash(Document doc) throws IOException {
         if (postRip) {
             return null;
         }
+        String cached = getCachedHash(getHashKind());
+        if (cached != null) {
+            qHashCached = true;
+            return cached;
+        }
+        qHashCached = false;
 
         Predicate<String> hrefFilter = href -> href.contains("Consumer.js");
         if (taggedRip) {
@@ -184,7 +224,69 @@ public class InstagramRipper extends AbstractJSONRipper {
                         pinnedRip ? this::getPinnedHash : hashtagRip ? this::getTagHash :
                                 taggedRip ? this::getUserTagHash : this::getProfileHash;
 
-        return hashExtractor.apply(body);
+        String hash = hashExtractor.apply(body);
+        if (hash != null && !hash.isEmpty()) {
+            cacheHash(getHashKind(), hash);
+        }
+        return hash;
+    }
+
+    private String getHashKind() {
+        return storiesRip || pinnedReelRip ? "stories" : pinnedRip ? "pinned" : hashtagRip ? "tag" :
+                taggedRip ? "user_tag" : "profile";
+    }
+
+    private static Path getHashCacheFile() {
+        return Paths.get(Utils.getConfigDir(), HASH_CACHE_FILE);
+    }
+
+    private static synchronized JSONObject loadHashCache() {
+        Path file = getHashCacheFile();
+        if (Files.exists(file)) {
+            try {
+                return new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            } catch (IOException | JSONException e) {
+                LOGGER.warn("Unable to read instagram query hashes from {}: {}", file, e.getMessage());
+            }
+        }
+        return new JSONObject();
+    }
+
+    private static synchronized void saveHashCache(JSONObject cache) {
+        Path file = getHashCacheFile();
+        try {
+            Path tmp = file.resolveSibling(HASH_CACHE_FILE + ".tmp");
+            Files.write(tmp, cache.toString(2).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to save instagram query hashes to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return
+     *      The cached query hash of this kind, or null if there is none younger than instagram.hash_ttl hours.
+     */
+    private static synchronized String getCachedHash(String kind) {
+        JSONObject entry = loadHashCache().optJSONObject(kind);
+        long ttl = TimeUnit.HOURS.toMillis(Utils.getConfigInteger("instagram.hash_ttl", 24));
+        if (entry == null || System.currentTimeMillis() - entry.optLong("found", 0) > ttl) {
+            return null;
+        }
+        return entry.optString("hash", null);
+    }
+
+    private static synchronized void cacheHash(String kind, String hash) {
+        JSONObject cache = loadHashCache();
+        cache.put(kind, new JSONObject().put("hash", hash).put("found", System.currentTimeMillis()));
+        saveHashCache(cache);
+    }
+
+    private static synchronized void forgetHash(String kind) {
+        JSONObject cache = loadHashCache();
+        if (cache.remove(kind) != null) {
+            saveHashCache(cache);
+        }
     }
 
     private String getStoriesHash(String jsData) {
@@ -223,6 +325,26 @@ public class InstagramRipper extends AbstractJSONRipper {
 
     @Override
     public JSONObject getNextPage(JSONObject source) throws IOException {
+        if (nextPage != null && nextPageSource == source) {
+            Future<JSONObject> loading = nextPage;
+            nextPage = null;
+            nextPageSource = null;
+            try {
+                return loading.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading next page", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+        return loadNextPage(source);
+    }
+
+    private JSONObject loadNextPage(JSONObject source) throws IOException {
         if (postRip || storiesRip || pinnedReelRip) {
             return null;
         }
@@ -265,8 +387,28 @@ public class InstagramRipper extends AbstractJSONRipper {
     private JSONObject graphqlRequest(JSONObject vars) throws IOException {
         // Sleep for a while to avoid a ban
         sleep(2500);
+        try {
+            return queryGraphql(vars);
+        } catch (IOException | JSONException e) {
+            if (!qHashCached) {
+                throw e;
+            }
+            // Instagram changed its query hashes since they were cached
+            LOGGER.info("Cached query hash {} failed, looking it up again", qHash);
+            forgetHash(getHashKind());
+            qHash = getQhash(document);
+            sleep(2500);
+            return queryGraphql(vars);
+        }
+    }
+
+    private JSONObject queryGraphql(JSONObject vars) throws IOException {
         String url = format("https://www.instagram.com/graphql/query/?query_hash=%s&variables=%s", qHash, vars.toString());
-        return Http.url(url).cookies(cookies).getJSON();
+        JSONObject json = Http.url(url).cookies(cookies).getJSON();
+        if (json.optJSONObject("data") == null) {
+            throw new IOException("No data in graphql response: " + json);
+        }
+        return json;
     }
 
     @Override
@@ -284,16 +426,50 @@ public class InstagramRipper extends AbstractJSONRipper {
             addPrefixInfo(detailsJson);
             return parseItemDetailsForUrls(detailsJson).collect(Collectors.toList());
         }
+        // Walk on to the next page while the details of the posts of this one load
+        nextPageSource = json;
+        nextPage = loader.submit(() -> loadNextPage(json));
         JSONArray edges = getMediaRoot(json).getJSONArray("edges");
-        return getStreamOfJsonArray(edges)
+        List<Future<JSONObject>> details = getStreamOfJsonArray(edges)
                 .map(edge -> getJsonStringByPath(edge, "node.shortcode"))
-                .map(this::downloadItemDetailsJson)
+                .map(shortcode -> loader.submit(() -> loadItemDetails(shortcode)))
+                .collect(Collectors.toList());
+        // Collected in page order, the prefixes have to line up with the URLs
+        return details.stream()
+                .map(this::getDetails)
                 .filter(Objects::nonNull)
                 .peek(this::addPrefixInfo)
                 .flatMap(this::parseItemDetailsForUrls)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Loads the details of a post, and the page of the post if it is a video (see parseItemDetailsForUrls).
+     */
+    private JSONObject loadItemDetails(String shortcode) {
+        JSONObject detailsJson = downloadItemDetailsJson(shortcode);
+        if (detailsJson != null) {
+            JSONObject mediaItem = getJsonObjectByPath(detailsJson, "graphql.shortcode_media");
+            if ("GraphVideo".equals(mediaItem.getString("__typename"))) {
+                String videoShortcode = mediaItem.getString("shortcode");
+                videoUrlsFromPage.put(videoShortcode, getVideoUrlFromPage(videoShortcode));
+            }
+        }
+        return detailsJson;
+    }
+
+    private JSONObject getDetails(Future<JSONObject> details) {
+        try {
+            return details.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.error("Unable to load post details", e.getCause());
+            return null;
+        }
+    }
+
     private Stream<? extends String> parseStoryItemForUrls(JSONObject storyItem) {
         if (storyItem.getBoolean("is_video")) {
             itemPrefixes.add(getTimestampPrefix(storyItem) + "preview_");
@@ -361,7 +537,7 @@ public class InstagramRipper extends AbstractJSONRipper {
         // HTML-tag url is requested here and marked with _extra_ prefix
         if ("GraphVideo".equals(mediaItem.getString("__typename"))) {
             String shortcode = mediaItem.getString("shortcode");
-            String urlFromPage = getVideoUrlFromPage(shortcode);
+            String urlFromPage = videoUrlsFromPage.computeIfAbsent(shortcode, this::getVideoUrlFromPage);
             if (!urlFromPage.isEmpty()) {
                 itemPrefixes.add(getTimestampPrefix(mediaItem) + shortcode + "_extra_");
                 return Stream.of(mediaItem.getString("video_url"), urlFromPage);
@@ -13,7 +13,6 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 
 
@@ -31,8 +30,6 @@ public class ListalRipper extends AbstractHTMLRipper {
     private String postUrl = "https://www.listal.com/item-list/"; //to load more images.
     private UrlType urlType = UrlType.UNKNOWN;
 
-    private DownloadThreadPool listalThreadPool = new DownloadThreadPool("listalThreadPool");
-
     public ListalRipper(URL url) throws IOException {
         super(url);
     }
@@ -70,7 +67,7 @@ public class ListalRipper extends AbstractHTMLRipper {
 
     @Override
     public void downloadURL(URL url, int index) {
-        listalThreadPool.addThread(new ListalImageDownloadThread(url, index));
+        resolvePage(url, page -> getImage(page, index));
     }
 
     @Override
@@ -129,12 +126,6 @@ public class ListalRipper extends AbstractHTMLRipper {
         return nextPage;
     }
 
-
-    @Override
-    public DownloadThreadPool getThreadPool() {
-        return listalThreadPool;
-    }
-
     /**
      * Returns the image urls for UrlType LIST.
      */
@@ -182,50 +173,29 @@ public class ListalRipper extends AbstractHTMLRipper {
         throw new MalformedURLException("Unable to fetch the gid for given url.");
     }
 
-    private class ListalImageDownloadThread extends Thread {
-
-        private URL url;
-        private int index;
-
-        public ListalImageDownloadThread(URL url, int index) {
-            super();
-            this.url = url;
-            this.index = index;
-        }
-
-        @Override
-        public void run() {
-            getImage();
-        }
-
-        public void getImage() {
-            try {
-                Document doc = Http.url(url).get();
+    private void getImage(URL url, int index) throws IOException {
+        Document doc = Http.url(url).get();
 
-                String imageUrl = doc.getElementsByClass("pure-img").attr("src");
-                if (imageUrl != "") {
-                    addURLToDownload(new URL(imageUrl), getPrefix(index), "", null, null,
-                            getImageName());
-                } else {
-                    LOGGER.error("Couldnt find image from url: " + url);
-                }
-            } catch (IOException e) {
-                LOGGER.error("[!] Exception while downloading image: " + url, e);
-            }
+        String imageUrl = doc.getElementsByClass("pure-img").attr("src");
+        if (imageUrl != "") {
+            addURLToDownload(new URL(imageUrl), getPrefix(index), "", null, null,
+                    getImageName(url));
+        } else {
+            LOGGER.error("Couldnt find image from url: " + url);
         }
+    }
 
-        public String getImageName() {
-            // Returns the image number of the link if possible.
-            String name = this.url.toExternalForm();
-            try {
-                name = name.substring(name.lastIndexOf("/") + 1);
-            } catch (Exception e) {
-                LOGGER.info("Failed to get name for the image.");
-                name = null;
-            }
-            // Listal stores images as .jpg
-            return name + ".jpg";
+    private String getImageName(URL url) {
+        // Returns the image number of the link if possible.
+        String name = url.toExternalForm();
+        try {
+            name = name.substring(name.lastIndexOf("/") + 1);
+        } catch (Exception e) {
+            LOGGER.info("Failed to get name for the image.");
+            name = null;
         }
+        // Listal stores images as .jpg
+        return name + ".jpg";
     }
 
     private static enum UrlType {
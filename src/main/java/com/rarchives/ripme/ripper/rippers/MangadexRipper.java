@@ -1,23 +1,43 @@
 package com.rarchives.ripme.ripper.rippers;
 
 import com.rarchives.ripme.ripper.AbstractJSONRipper;
+import com.rarchives.ripme.ripper.ItemSink;
 import com.rarchives.ripme.ui.RipStatusMessage;
 import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.Mirrors;
+import com.rarchives.ripme.utils.Utils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class MangadexRipper extends AbstractJSONRipper {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService chapterLoader = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "mangadex-chapters-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    // When the next chapter API request may be sent, shared by all mangadex rips
+    private static long nextApiRequest = 0;
+
     private final String chapterApiEndPoint = "https://mangadex.org/api/chapter/";
     private final String mangaApiEndPoint = "https://mangadex.org/api/manga/";
     private boolean isSingleChapter;
@@ -91,20 +111,20 @@ public class MangadexRipper extends AbstractJSONRipper {
 
     @Override
     protected List<String> getURLsFromJSON(JSONObject json) {
+        List<String> assetURLs = new ArrayList<>();
+        try {
+            emitURLsFromJSON(json, assetURLs::add);
+        } catch (IOException e) {
+            LOGGER.error("Unable to list chapter images", e);
+        }
+        return assetURLs;
+    }
+
+    @Override
+    protected void emitURLsFromJSON(JSONObject json, ItemSink sink) throws IOException {
         if (isSingleChapter) {
-            List<String> assetURLs = new ArrayList<>();
-            JSONArray currentObject;
-            String chapterHash;
-            // Server is the cdn hosting the images.
-            String server;
-            chapterHash = json.getString("hash");
-            server = json.getString("server");
-            for (int i = 0; i < json.getJSONArray("page_array").length(); i++) {
-                currentObject = json.getJSONArray("page_array");
-
-                assetURLs.add(getImageUrl(chapterHash, currentObject.getString(i), server));
-            }
-            return assetURLs;
+            emitChapterImages(json, sink);
+            return;
         }
         JSONObject chaptersJSON = (JSONObject) json.get("chapter");
         JSONObject temp;
@@ -119,38 +139,84 @@ public class MangadexRipper extends AbstractJSONRipper {
 
         }
 
-        List<String> assetURLs = new ArrayList<>();
-        JSONArray currentObject;
-        String chapterHash;
-        // Server is the cdn hosting the images.
-        String server;
-        JSONObject chapterJSON = null;
-        TreeMap<Double, String> treeMap = new TreeMap<>(chapterIDs);
-        Iterator it = treeMap.keySet().iterator();
-        while (it.hasNext()) {
-            double key = (double) it.next();
-            try {
-                chapterJSON = Http.url(new URL(chapterApiEndPoint + treeMap.get(key))).getJSON();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Load up to mangadex.threads chapters ahead, and hand the pages of each chapter
+        // over as soon as it and the ones before it are in, so files keep chapter order
+        List<Map.Entry<Double, String>> chapters = new ArrayList<>(new TreeMap<>(chapterIDs).entrySet());
+        int ahead = Math.max(1, Utils.getConfigInteger("mangadex.threads", 3));
+        Deque<Future<JSONObject>> loading = new ArrayDeque<>();
+        int next = 0;
+        try {
+            for (Map.Entry<Double, String> chapter : chapters) {
+                while (next < chapters.size() && loading.size() < ahead) {
+                    String chapterID = chapters.get(next++).getValue();
+                    loading.add(chapterLoader.submit(() -> loadChapter(chapterID)));
+                }
+                JSONObject chapterJSON;
+                try {
+                    chapterJSON = loading.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading chapter " + chapter.getKey(), e);
+                } catch (ExecutionException e) {
+                    LOGGER.error("Unable to load chapter {}", chapter.getKey(), e.getCause());
+                    continue;
+                }
+                sendUpdate(RipStatusMessage.STATUS.LOADING_RESOURCE, "chapter " + chapter.getKey());
+                if (isStopped() || !emitChapterImages(chapterJSON, sink)) {
+                    return;
+                }
             }
-            sendUpdate(RipStatusMessage.STATUS.LOADING_RESOURCE, "chapter " + key);
-            chapterHash = chapterJSON.getString("hash");
-            server = chapterJSON.getString("server");
-            for (int i = 0; i < chapterJSON.getJSONArray("page_array").length(); i++) {
-                currentObject = chapterJSON.getJSONArray("page_array");
-
-                assetURLs.add(getImageUrl(chapterHash, currentObject.getString(i), server));
+        } finally {
+            for (Future<JSONObject> chapter : loading) {
+                chapter.cancel(true);
             }
         }
+    }
 
-        return assetURLs;
+    /**
+     * Loads a chapter from the API, keeping all rips to mangadex.requests_per_second API requests.
+     */
+    private JSONObject loadChapter(String chapterID) throws IOException, InterruptedException {
+        long interval = 1000 / Math.max(1, Utils.getConfigInteger("mangadex.requests_per_second", 2));
+        long wait;
+        synchronized (MangadexRipper.class) {
+            long now = System.currentTimeMillis();
+            long sendAt = Math.max(now, nextApiRequest);
+            nextApiRequest = sendAt + interval;
+            wait = sendAt - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        return Http.url(new URL(chapterApiEndPoint + chapterID)).getJSON();
+    }
+
+    /**
+     * @return
+     *      False if the sink asked to stop.
+     */
+    private boolean emitChapterImages(JSONObject chapterJSON, ItemSink sink) throws IOException {
+        String chapterHash = chapterJSON.getString("hash");
+        // Server is the cdn hosting the images.
+        String server = chapterJSON.getString("server");
+        // MangaDex@Home nodes come with the main server as a fallback, downloads can hedge on it
+        String fallback = chapterJSON.optString("server_fallback", "");
+        if (!fallback.isEmpty() && !fallback.equals(server)) {
+            Mirrors.addAlternate(server + chapterHash + "/", fallback + chapterHash + "/");
+        }
+        JSONArray pages = chapterJSON.getJSONArray("page_array");
+        for (int i = 0; i < pages.length(); i++) {
+            if (!sink.accept(getImageUrl(chapterHash, pages.getString(i), server))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     protected void downloadURL(URL url, int index) {
-        // mangadex does not like rippers one bit, so we wait a good long while between requests
-        sleep(1000);
+        // No sleep here: downloads from each image server are paced by HostConcurrency,
+        // which backs off as soon as a server pushes back
         addURLToDownload(url, getPrefix(index));
     }
 
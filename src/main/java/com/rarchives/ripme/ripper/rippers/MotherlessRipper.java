@@ -12,7 +12,6 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
 import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
 import com.rarchives.ripme.utils.Http;
 import com.rarchives.ripme.utils.Utils;
@@ -25,11 +24,8 @@ public class MotherlessRipper extends AbstractHTMLRipper {
     private static final String DOMAIN = "motherless.com",
                                 HOST   = "motherless";
 
-    private DownloadThreadPool motherlessThreadPool;
-
     public MotherlessRipper(URL url) throws IOException {
         super(url);
-        motherlessThreadPool = new DownloadThreadPool();
     }
 
     @Override
@@ -77,6 +73,11 @@ public class MotherlessRipper extends AbstractHTMLRipper {
         }
     }
 
+    @Override
+    protected boolean hasCheckpointSupport() {
+        return true;
+    }
+
     @Override
     protected List<String> getURLsFromPage(Document page) {
         List<String> pageURLs = new ArrayList<>();
@@ -108,14 +109,13 @@ public class MotherlessRipper extends AbstractHTMLRipper {
 
     @Override
     protected void downloadURL(URL url, int index) {
-        // Create thread for finding image at "url" page
-        MotherlessImageThread mit = new MotherlessImageThread(url, index);
-        motherlessThreadPool.addThread(mit);
-        try {
-            Thread.sleep(IMAGE_SLEEP_TIME);
-        } catch (InterruptedException e) {
-            LOGGER.warn("Interrupted while waiting to load next image", e);
-        }
+        // Find the image at "url" page
+        resolvePage(url, page -> fetchImage(page, index));
+    }
+
+    @Override
+    protected long getResolveInterval() {
+        return IMAGE_SLEEP_TIME;
     }
 
     @Override
@@ -150,43 +150,24 @@ public class MotherlessRipper extends AbstractHTMLRipper {
 
 
     /**
-     * Helper class to find and download images found on "image" pages
+     * Finds and downloads the file of an "image" page
      */
-    private class MotherlessImageThread extends Thread {
-        private URL url;
-        private int index;
-
-        MotherlessImageThread(URL url, int index) {
-            super();
-            this.url = url;
-            this.index = index;
-        }
-
-        @Override
-        public void run() {
-            try {
-                if (isStopped() && !isThisATest()) {
-                    return;
-                }
-                String u = this.url.toExternalForm();
-                Document doc = Http.url(u)
-                                   .referrer(u)
-                                   .get();
-                Pattern p = Pattern.compile("^.*__fileurl = '([^']+)';.*$", Pattern.DOTALL);
-                Matcher m = p.matcher(doc.outerHtml());
-                if (m.matches()) {
-                    String file = m.group(1);
-                    String prefix = "";
-                    if (Utils.getConfigBoolean("download.save_order", true)) {
-                        prefix = String.format("%03d_", index);
-                    }
-                    addURLToDownload(new URL(file), prefix);
-                } else {
-                    LOGGER.warn("[!] could not find '__fileurl' at " + url);
-                }
-            } catch (IOException e) {
-                LOGGER.error("[!] Exception while loading/parsing " + this.url, e);
+    private void fetchImage(URL url, int index) throws IOException {
+        String u = url.toExternalForm();
+        Document doc = Http.url(u)
+                           .referrer(u)
+                           .get();
+        Pattern p = Pattern.compile("^.*__fileurl = '([^']+)';.*$", Pattern.DOTALL);
+        Matcher m = p.matcher(doc.outerHtml());
+        if (m.matches()) {
+            String file = m.group(1);
+            String prefix = "";
+            if (Utils.getConfigBoolean("download.save_order", true)) {
+                prefix = String.format("%03d_", index);
             }
+            addURLToDownload(new URL(file), prefix);
+        } else {
+            LOGGER.warn("[!] could not find '__fileurl' at " + url);
         }
     }
 
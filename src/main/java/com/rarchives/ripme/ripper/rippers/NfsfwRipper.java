@@ -13,7 +13,6 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
-import com.rarchives.ripme.ripper.DownloadThreadPool;
 import com.rarchives.ripme.utils.Http;
 
 public class NfsfwRipper extends AbstractHTMLRipper {
@@ -31,12 +30,9 @@ public class NfsfwRipper extends AbstractHTMLRipper {
 
     // cached first page
     private Document fstPage;
-    // threads pool for downloading images from image pages
-    private DownloadThreadPool nfsfwThreadPool;
 
     public NfsfwRipper(URL url) throws IOException {
         super(url);
-        nfsfwThreadPool = new DownloadThreadPool("NFSFW");
     }
 
     @Override
@@ -108,8 +104,9 @@ public class NfsfwRipper extends AbstractHTMLRipper {
         if (!this.currentDir.equals("")){
             index = ++this.index;
         }
-        NfsfwImageThread t = new NfsfwImageThread(url, currentDir, index);
-        nfsfwThreadPool.addThread(t);
+        String subdir = currentDir;
+        int imageIndex = index;
+        resolvePage(url, page -> fetchImage(page, subdir, imageIndex));
     }
 
     @Override
@@ -145,11 +142,6 @@ public class NfsfwRipper extends AbstractHTMLRipper {
                         + " Got: " + url);
     }
 
-    @Override
-    public DownloadThreadPool getThreadPool() {
-        return nfsfwThreadPool;
-    }
-
     @Override
     public boolean hasQueueSupport() {
         return true;
@@ -194,39 +186,21 @@ public class NfsfwRipper extends AbstractHTMLRipper {
     }
 
     /**
-     * Helper class to find and download images found on "image" pages
+     * Finds and downloads the image of an "image" page
      */
-    private class NfsfwImageThread extends Thread {
-        private URL url;
-        private String subdir;
-        private int index;
-
-        NfsfwImageThread(URL url, String subdir, int index) {
-            super();
-            this.url = url;
-            this.subdir = subdir;
-            this.index = index;
+    private void fetchImage(URL url, String subdir, int index) throws IOException {
+        Document doc = Http.url(url)
+                           .referrer(url)
+                           .get();
+        Elements images = doc.select(".gbBlock img");
+        if (images.isEmpty()) {
+            LOGGER.error("Failed to find image at {}", url);
+            return;
         }
-
-        @Override
-        public void run() {
-            try {
-                Document doc = Http.url(this.url)
-                                   .referrer(this.url)
-                                   .get();
-                Elements images = doc.select(".gbBlock img");
-                if (images.isEmpty()) {
-                    LOGGER.error("Failed to find image at " + this.url);
-                    return;
-                }
-                String file = images.first().attr("src");
-                if (file.startsWith("/")) {
-                    file = "http://nfsfw.com" + file;
-                }
-                addURLToDownload(new URL(file), getPrefix(index), this.subdir);
-            } catch (IOException e) {
-                LOGGER.error("[!] Exception while loading/parsing " + this.url, e);
-            }
+        String file = images.first().attr("src");
+        if (file.startsWith("/")) {
+            file = "http://nfsfw.com" + file;
         }
+        addURLToDownload(new URL(file), getPrefix(index), subdir);
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +27,7 @@ import org.json.JSONTokener;
 import com.rarchives.ripme.ripper.AlbumRipper;
 import com.rarchives.ripme.ui.UpdateUtils;
 import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.LinkResolver;
 import com.rarchives.ripme.utils.RipUtils;
 import com.rarchives.ripme.utils.Utils;
 import org.jsoup.Jsoup;
@@ -47,6 +51,12 @@ public class RedditRipper extends AlbumRipper {
 
     private long lastRequestTime = 0;
 
+    // Links resolved by LinkResolver, handled on the rip thread so the ripper's state stays single threaded
+    private final BlockingQueue<Runnable> resolvedLinks = new LinkedBlockingQueue<>();
+    // Links handed to LinkResolver and not handled yet, only used on the rip thread.
+    // At most LinkResolver.getQueueSize(), so the listing walk can't run far ahead of resolving
+    private int pendingLinks = 0;
+
     private Boolean shouldAddURL() {
         return (alreadyDownloadedUrls >= Utils.getConfigInteger("history.end_rip_after_already_seen", 1000000000) && !isThisATest());
     }
@@ -89,15 +99,44 @@ public class RedditRipper extends AlbumRipper {
                 break;
             }
             jsonURL = getAndParseAndReturnNext(jsonURL);
+            handleResolvedLinks(LinkResolver.getQueueSize());
             if (jsonURL == null || isThisATest() || isStopped()) {
                 break;
             }
         }
+        handleResolvedLinks(0);
         waitForThreads();
     }
 
 
 
+    /**
+     * Handles the links LinkResolver is done with.
+     * @param maxPending
+     *      Wait for links to resolve until no more than this many are pending.
+     */
+    private void handleResolvedLinks(int maxPending) {
+        while (pendingLinks > 0) {
+            boolean wait = pendingLinks > maxPending;
+            Runnable link;
+            try {
+                link = wait ? resolvedLinks.poll(3600, TimeUnit.SECONDS) : resolvedLinks.poll();
+            } catch (InterruptedException e) {
+                LOGGER.error("[!] Interrupted while waiting for links to resolve: ", e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (link == null) {
+                if (wait) {
+                    LOGGER.error("[!] Timed out waiting for {} links to resolve", pendingLinks);
+                }
+                return;
+            }
+            pendingLinks--;
+            link.run();
+        }
+    }
+
     private URL getAndParseAndReturnNext(URL url) throws IOException {
         JSONArray jsonArray = getJsonArrayFromURL(url), children;
         JSONObject json, data;
@@ -395,7 +434,29 @@ public class RedditRipper extends AlbumRipper {
             }
         }
 
-        List<URL> urls = RipUtils.getFilesFromURL(originalURL);
+        // Resolve in the background and keep walking the listing; the rip thread
+        // picks the result up between pages and waits for the rest before it finishes
+        String fileTitle = title;
+        String subdir = subdirectory;
+        handleResolvedLinks(LinkResolver.getQueueSize() - 1);
+        pendingLinks++;
+        LinkResolver.resolve(originalURL).whenComplete((urls, e) -> resolvedLinks.add(() -> {
+            if (e != null) {
+                LOGGER.error("[!] Unable to handle {}", theUrl, e);
+                return;
+            }
+            try {
+                handleFiles(urls, theUrl, id, fileTitle, subdir);
+            } catch (RuntimeException handleError) {
+                LOGGER.error("[!] Unable to handle {}", theUrl, handleError);
+            }
+        }));
+    }
+
+    private void handleFiles(List<URL> urls, String theUrl, String id, String title, String subdirectory) {
+        if (isStopped()) {
+            return;
+        }
         if (urls.size() == 1) {
             String url = urls.get(0).toExternalForm();
             Pattern p = Pattern.compile("https?://i.reddituploads.com/([a-zA-Z0-9]+)\\?.*");
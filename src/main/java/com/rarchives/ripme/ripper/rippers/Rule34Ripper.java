@@ -8,20 +8,20 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.jsoup.nodes.Document;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
 
-import com.rarchives.ripme.ripper.AbstractHTMLRipper;
-import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.ripper.AbstractBooruRipper;
 
-public class Rule34Ripper extends AbstractHTMLRipper {
+public class Rule34Ripper extends AbstractBooruRipper {
 
     public Rule34Ripper(URL url) throws IOException {
         super(url);
     }
 
-    private String apiUrl;
-    private int pageNumber = 0;
+    // Largest page the API serves
+    private static final int PAGE_SIZE = 1000;
 
     @Override
     public String getHost() {
@@ -52,40 +52,24 @@ public class Rule34Ripper extends AbstractHTMLRipper {
     }
 
     public URL getAPIUrl() throws MalformedURLException {
-        URL urlToReturn = new URL("https://rule34.xxx/index.php?page=dapi&s=post&q=index&limit=100&tags=" + getGID(url));
+        URL urlToReturn = new URL("https://rule34.xxx/index.php?page=dapi&s=post&q=index&limit=" + PAGE_SIZE + "&tags=" + getGID(url));
         return urlToReturn;
     }
 
     @Override
-    public Document getFirstPage() throws IOException {
-        apiUrl = getAPIUrl().toExternalForm();
-        // "url" is an instance field of the superclass
-        return Http.url(getAPIUrl()).get();
+    protected URL getPostsURL(int page, String beforeId) throws MalformedURLException {
+        return new URL(getAPIUrl().toExternalForm() + "&pid=" + (page - 1));
     }
 
     @Override
-    public Document getNextPage(Document doc) throws IOException {
-        if (doc.html().contains("Search error: API limited due to abuse")) {
+    protected List<Post> parsePosts(URL pageURL, String body) throws IOException {
+        if (body.contains("Search error: API limited due to abuse")) {
             throw new IOException("No more pages");
         }
-        pageNumber += 1;
-        String nextPage = apiUrl + "&pid=" + pageNumber;
-        return Http.url(nextPage).get();
-    }
-
-    @Override
-    public List<String> getURLsFromPage(Document doc) {
-        List<String> result = new ArrayList<>();
-        for (Element el : doc.select("posts > post")) {
-            String imageSource = el.select("post").attr("file_url");
-            result.add(imageSource);
-
+        List<Post> result = new ArrayList<>();
+        for (Element el : Jsoup.parse(body, "", Parser.xmlParser()).select("posts > post")) {
+            result.add(new Post(el.attr("id"), el.attr("file_url")));
         }
         return result;
     }
-
-    @Override
-    public void downloadURL(URL url, int index) {
-        addURLToDownload(url, getPrefix(index));
-    }
 }
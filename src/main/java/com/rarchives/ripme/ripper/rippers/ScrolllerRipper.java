@@ -11,19 +11,20 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.java_websocket.client.WebSocketClient;
-
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.java_websocket.handshake.ServerHandshake;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.rarchives.ripme.ripper.AbstractJSONRipper;
+import com.rarchives.ripme.utils.GraphQLWebSocket;
+import com.rarchives.ripme.utils.Utils;
 
 public class ScrolllerRipper extends AbstractJSONRipper {
 
+    private GraphQLWebSocket subscriptions;
+
     public ScrolllerRipper(URL url) throws IOException {
         super(url);
     }
@@ -154,67 +155,60 @@ public class ScrolllerRipper extends AbstractJSONRipper {
         return new JSONObject("{}");
     }
 
-    private JSONObject getPostsSorted(JSONObject data) throws MalformedURLException {
+    private JSONObject getPostsSorted(JSONObject data) throws IOException {
 
         // The actual GraphQL query call (if sort parameter is present)
-        try {
-
-            ArrayList<String> postsJsonStrings = new ArrayList<>();
-
-            WebSocketClient wsc = new WebSocketClient(new URI("wss://api.scrolller.com/api/v2/graphql")) {
-                @Override
-                public void onOpen(ServerHandshake serverHandshake) {
-                    // As soon as the WebSocket connects send our query
-                    this.send(data.toString());
-                }
-
-                @Override
-                public void onMessage(String s) {
-                    postsJsonStrings.add(s);
-                    if (new JSONObject(s).getJSONObject("data").getJSONObject("fetchSubreddit").has("iterator")) {
-                        this.close();
-                    }
-                }
-
-                @Override
-                public void onClose(int i, String s, boolean b) {
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    LOGGER.error(String.format("WebSocket error, server reported %s", e.getMessage()));
-                }
-            };
-            wsc.connect();
-
-            while (!wsc.isClosed()) {
-                // Posts list is not over until the connection closes.
+        // Posts come in one frame each, the page is over with the frame holding the iterator.
+        // Error frames have no data, they don't end the page
+        List<JSONObject> frames = getSubscriptions().query(data, frame -> {
+            JSONObject frameData = frame.optJSONObject("data");
+            JSONObject subreddit = frameData == null ? null : frameData.optJSONObject("fetchSubreddit");
+            return subreddit != null && subreddit.has("iterator");
+        });
+
+        JSONObject finalObject = new JSONObject();
+        JSONArray posts = new JSONArray();
+
+        // Iterator is the last object in the post list, let's duplicate it in his own object for clarity.
+        finalObject.put("iterator", frames.get(frames.size() - 1));
+
+        for (JSONObject post : frames) {
+            if (post.optJSONObject("data") != null) {
+                posts.put(post);
             }
+        }
+        finalObject.put("posts", posts);
 
-            JSONObject finalObject = new JSONObject();
-            JSONArray posts = new JSONArray();
+        if (posts.length() == 1 && !posts.getJSONObject(0).getJSONObject("data").getJSONObject("fetchSubreddit").has("mediaSources")) {
+            // Only iterator, no posts.
+            return null;
+        }
 
-            // Iterator is the last object in the post list, let's duplicate it in his own object for clarity.
-            finalObject.put("iterator", new JSONObject(postsJsonStrings.get(postsJsonStrings.size()-1)));
+        return finalObject;
+    }
 
-            for (String postString : postsJsonStrings) {
-                posts.put(new JSONObject(postString));
+    private synchronized GraphQLWebSocket getSubscriptions() throws IOException {
+        // One connection for every page of the rip
+        if (subscriptions == null) {
+            try {
+                subscriptions = new GraphQLWebSocket(new URI("wss://api.scrolller.com/api/v2/graphql"),
+                        Utils.getConfigInteger("page.timeout", 5 * 1000));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
             }
-            finalObject.put("posts", posts);
+        }
+        return subscriptions;
+    }
 
-            if (finalObject.getJSONArray("posts").length() == 1 && !finalObject.getJSONArray("posts").getJSONObject(0).getJSONObject("data").getJSONObject("fetchSubreddit").has("mediaSources")) {
-                // Only iterator, no posts.
-                return null;
+    @Override
+    public void rip() throws IOException {
+        try {
+            super.rip();
+        } finally {
+            if (subscriptions != null) {
+                subscriptions.close();
             }
-
-            return finalObject;
-
-
-        } catch (URISyntaxException ue) {
-            // Nothing to catch, it's an hardcoded URI.
         }
-
-        return null;
     }
 
 
@@ -4,9 +4,15 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +33,8 @@ public class TumblrRipper extends AlbumRipper {
 
     int index = 1;
 
+    private static final int POSTS_PER_PAGE = 20;
+
     private static final String DOMAIN = "tumblr.com",
             HOST   = "tumblr",
             IMAGE_PATTERN = "([^\\s]+(\\.(?i)(?:jpg|png|gif|bmp))$)";
@@ -39,6 +47,10 @@ public class TumblrRipper extends AlbumRipper {
     }
     private ALBUM_TYPE albumType;
     private String subdomain, tagName, postNumber;
+    // If true the rip loop won't be run
+    private volatile boolean shouldStopRipping = false;
+    // When the next API request may go out; shared by all Tumblr rips, the limit is per API key
+    private static long nextRequestTime = 0;
 
     private static final String TUMBLR_AUTH_CONFIG_KEY = "tumblr.auth";
 
@@ -133,100 +145,148 @@ public class TumblrRipper extends AlbumRipper {
     @Override
     public void rip() throws IOException {
         String[] mediaTypes;
-        // If true the rip loop won't be run
-        boolean shouldStopRipping = false;
         if (albumType == ALBUM_TYPE.POST) {
             mediaTypes = new String[] { "post" };
         } else {
             mediaTypes = new String[] { "photo", "video" };
         }
-        int offset;
         for (String mediaType : mediaTypes) {
-            if (isStopped()) {
+            if (isStopped() || shouldStopRipping) {
                 break;
             }
-
-            if (shouldStopRipping) {
-                break;
+            JSONObject json = getPage(mediaType, 0);
+            if (json == null || !handleJSON(json) || albumType == ALBUM_TYPE.POST) {
+                continue;
             }
-            offset = 0;
-            while (true) {
-                if (isStopped()) {
-                    break;
-                }
+            ripRemainingPages(mediaType, getTotalPosts(json));
+        }
+        waitForThreads();
+    }
 
-                if (shouldStopRipping) {
+    /**
+     * Pages are addressed by offset, so once the first page tells how many posts there
+     * are, the following pages are fetched tumblr.threads at a time. They are still
+     * handled in order, so file numbering does not change.
+     */
+    private void ripRemainingPages(String mediaType, int totalPosts) throws IOException {
+        int threads = Math.max(1, Utils.getConfigInteger("tumblr.threads", 3));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<JSONObject>> pages = new ArrayDeque<>();
+        int nextOffset = POSTS_PER_PAGE;
+        try {
+            while (!isStopped() && !shouldStopRipping) {
+                // Keep a few pages ahead of the one being handled
+                while (pages.size() < threads * 2 && nextOffset < totalPosts) {
+                    int offset = nextOffset;
+                    pages.add(pool.submit(() -> getPage(mediaType, offset)));
+                    nextOffset += POSTS_PER_PAGE;
+                }
+                Future<JSONObject> page = pages.poll();
+                if (page == null) {
                     break;
                 }
-
-
-                String apiURL = getTumblrApiURL(mediaType, offset);
-                LOGGER.info("Retrieving " + apiURL);
-                sendUpdate(STATUS.LOADING_RESOURCE, apiURL);
-
-                JSONObject json = null;
-                boolean retry = false;
-
+                JSONObject json;
                 try {
-                    json = Http.url(apiURL).getJSON();
-                } catch (IOException e) {
-                    Throwable cause = e.getCause();
-                    if (cause instanceof HttpStatusException) {
-                        HttpStatusException status = (HttpStatusException)cause;
-                        if (status.getStatusCode() == HttpURLConnection.HTTP_UNAUTHORIZED && !useDefaultApiKey) {
-                            retry = true;
-                        } else if (status.getStatusCode() == 404) {
-                            LOGGER.error("No user or album found!");
-                            sendUpdate(STATUS.NO_ALBUM_OR_USER, "Album or user doesn't exist!");
-                            shouldStopRipping = true;
-                            break;
-                        } else if (status.getStatusCode() == 429) {
-                            LOGGER.error("Tumblr rate limit has been exceeded");
-                            sendUpdate(STATUS.DOWNLOAD_ERRORED,"Tumblr rate limit has been exceeded");
-                            shouldStopRipping = true;
-                            break;
-                        }
+                    json = page.get();
+                } catch (InterruptedException e) {
+                    LOGGER.error("[!] Interrupted while waiting to load next album:", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
                     }
+                    throw new IOException(e.getCause());
+                }
+                if (json == null || !handleJSON(json)) {
+                    // Returns false if an error occurs and we should stop.
+                    break;
                 }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-                if (retry) {
-                    useDefaultApiKey = true;
-                    String apiKey = getApiKey();
+    /**
+     * @return
+     *      Number of posts reported by the first page, or Integer.MAX_VALUE if it has none;
+     *      then paging goes on until a page comes back empty.
+     */
+    private int getTotalPosts(JSONObject json) {
+        JSONObject response = json.getJSONObject("response");
+        String key = albumType == ALBUM_TYPE.LIKED ? "liked_count" : "total_posts";
+        return response.optInt(key, Integer.MAX_VALUE);
+    }
 
-                    String message = "401 Unauthorized. Will retry with default Tumblr API key: " + apiKey;
-                    LOGGER.info(message);
-                    sendUpdate(STATUS.DOWNLOAD_WARN, message);
+    /**
+     * Loads one page of posts from the API, at most tumblr.requests_per_second a second.
+     * @return
+     *      The page, or null if ripping should stop.
+     */
+    private JSONObject getPage(String mediaType, int offset) throws IOException {
+        waitForRequestSlot();
+        String apiURL = getTumblrApiURL(mediaType, offset);
+        LOGGER.info("Retrieving " + apiURL);
+        sendUpdate(STATUS.LOADING_RESOURCE, apiURL);
 
-                    Utils.setConfigString(TUMBLR_AUTH_CONFIG_KEY, apiKey); // save the default key to the config
+        try {
+            return Http.url(apiURL).getJSON();
+        } catch (IOException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof HttpStatusException)) {
+                throw e;
+            }
+            HttpStatusException status = (HttpStatusException)cause;
+            if (status.getStatusCode() == 404) {
+                LOGGER.error("No user or album found!");
+                sendUpdate(STATUS.NO_ALBUM_OR_USER, "Album or user doesn't exist!");
+                shouldStopRipping = true;
+                return null;
+            } else if (status.getStatusCode() == 429) {
+                LOGGER.error("Tumblr rate limit has been exceeded");
+                sendUpdate(STATUS.DOWNLOAD_ERRORED,"Tumblr rate limit has been exceeded");
+                shouldStopRipping = true;
+                return null;
+            } else if (status.getStatusCode() != HttpURLConnection.HTTP_UNAUTHORIZED || useDefaultApiKey) {
+                throw e;
+            }
+        }
 
-                    // retry loading the JSON
+        useDefaultApiKey = true;
+        String apiKey = getApiKey();
 
-                    apiURL = getTumblrApiURL(mediaType, offset);
-                    LOGGER.info("Retrieving " + apiURL);
-                    sendUpdate(STATUS.LOADING_RESOURCE, apiURL);
+        String message = "401 Unauthorized. Will retry with default Tumblr API key: " + apiKey;
+        LOGGER.info(message);
+        sendUpdate(STATUS.DOWNLOAD_WARN, message);
 
-                    json = Http.url(apiURL).getJSON();
-                }
+        Utils.setConfigString(TUMBLR_AUTH_CONFIG_KEY, apiKey); // save the default key to the config
 
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    LOGGER.error("[!] Interrupted while waiting to load next album:", e);
-                    break;
-                }
+        // retry loading the JSON
+        apiURL = getTumblrApiURL(mediaType, offset);
+        LOGGER.info("Retrieving " + apiURL);
+        sendUpdate(STATUS.LOADING_RESOURCE, apiURL);
 
-                if (!handleJSON(json)) {
-                    // Returns false if an error occurs and we should stop.
-                    break;
-                }
+        return Http.url(apiURL).getJSON();
+    }
 
-                offset += 20;
-            }
-            if (isStopped()) {
-                break;
+    private void waitForRequestSlot() throws IOException {
+        long interval = 1000 / Math.max(1, Utils.getConfigInteger("tumblr.requests_per_second", 3));
+        long wait;
+        synchronized (TumblrRipper.class) {
+            long now = System.currentTimeMillis();
+            nextRequestTime = Math.max(now, nextRequestTime);
+            wait = nextRequestTime - now;
+            nextRequestTime += interval;
+        }
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to load next page", e);
             }
         }
-        waitForThreads();
     }
 
     private boolean handleJSON(JSONObject json) {
@@ -269,7 +329,7 @@ public class TumblrRipper extends AlbumRipper {
                         if (m.matches()) {
                             downloadURL(fileURL, date);
                         } else {
-                            URL redirectedURL = Http.url(fileURL).ignoreContentType().response().url();
+                            URL redirectedURL = Http.url(fileURL).finalURL();
                             downloadURL(redirectedURL, date);
                         }
                     } catch (Exception e) {
@@ -12,20 +12,22 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import org.jsoup.Connection.Response;
 import org.jsoup.nodes.Document;
 
 import com.rarchives.ripme.ripper.AbstractJSONRipper;
 import com.rarchives.ripme.utils.Http;
+import com.rarchives.ripme.utils.RateLimitBudget;
 import com.rarchives.ripme.utils.Utils;
 
 public class TwitterRipper extends AbstractJSONRipper {
 
     private static final String DOMAIN = "twitter.com", HOST = "twitter";
 
-    private static final int MAX_REQUESTS = Utils.getConfigInteger("twitter.max_requests", 10);
     private static final boolean RIP_RETWEETS = Utils.getConfigBoolean("twitter.rip_retweets", true);
     private static final int MAX_ITEMS_REQUEST = Utils.getConfigInteger("twitter.max_items_request", 200);
-    private static final int WAIT_TIME = 2000;
+    // A request that hit the rate limit is sent again once the window resets, this many times at most
+    private static final int RATE_LIMITED_TRIES = 3;
 
     // Base 64 of consumer key : consumer secret
     private String authKey;
@@ -94,24 +96,24 @@ public class TwitterRipper extends AbstractJSONRipper {
         }
     }
 
-    private void checkRateLimits(String resource, String api) throws IOException {
-        Document doc = Http.url("https://api.twitter.com/1.1/application/rate_limit_status.json?resources=" + resource)
-                .ignoreContentType().header("Authorization", "Bearer " + accessToken)
-                .header("Content-Type", "application/x-www-form-urlencoded;charset=UTF-8")
-                .header("User-agent", "ripe and zipe").get();
-        String body = doc.body().html().replaceAll("&quot;", "\"");
+    // Twitter keeps a separate budget for each endpoint
+    private String getRateLimitedApi() {
+        return albumType == ALBUM_TYPE.SEARCH ? "twitter/search/tweets" : "twitter/statuses/user_timeline";
+    }
+
+    /**
+     * Shares the budget the x-rate-limit headers of a response announce with all twitter rips.
+     */
+    private void updateRateLimit(Response response) {
+        String remaining = response.header("x-rate-limit-remaining");
+        String reset = response.header("x-rate-limit-reset");
+        if (remaining == null || reset == null) {
+            return;
+        }
         try {
-            JSONObject json = new JSONObject(body);
-            JSONObject stats = json.getJSONObject("resources").getJSONObject(resource).getJSONObject(api);
-            int remaining = stats.getInt("remaining");
-            LOGGER.info("    Twitter " + resource + " calls remaining: " + remaining);
-            if (remaining < 20) {
-                LOGGER.error("Twitter API calls exhausted: " + stats.toString());
-                throw new IOException("Less than 20 API calls remaining; not enough to rip.");
-            }
-        } catch (JSONException e) {
-            LOGGER.error("JSONException: ", e);
-            throw new IOException("Error while parsing JSON: " + body, e);
+            RateLimitBudget.update(getRateLimitedApi(), Integer.parseInt(remaining), Long.parseLong(reset) * 1000);
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Unexpected rate limit headers: {}, {}", remaining, reset);
         }
     }
 
@@ -139,17 +141,38 @@ public class TwitterRipper extends AbstractJSONRipper {
     private JSONObject getTweets() throws IOException {
         currentRequest++;
         String url = getApiURL(lastMaxID - 1);
-        LOGGER.info("    Retrieving " + url);
-        Document doc = Http.url(url).ignoreContentType().header("Authorization", "Bearer " + accessToken)
-                .header("Content-Type", "application/x-www-form-urlencoded;charset=UTF-8")
-                .header("User-agent", "ripe and zipe").get();
-        String body = doc.body().html().replaceAll("&quot;", "\"");
-        Object jsonObj = new JSONTokener(body).nextValue();
+        Response response;
+        for (int tries = 1; ; tries++) {
+            // Waits for the rate limit window to reset if the budget is spent
+            RateLimitBudget.acquire(getRateLimitedApi());
+            LOGGER.info("    Retrieving " + url);
+            Http http = Http.url(url).ignoreContentType().header("Authorization", "Bearer " + accessToken)
+                    .header("Content-Type", "application/x-www-form-urlencoded;charset=UTF-8")
+                    .header("User-agent", "ripe and zipe");
+            // Twitter's errors are read from the response body
+            http.connection().ignoreHttpErrors(true);
+            response = http.response();
+            updateRateLimit(response);
+            if (response.statusCode() != 429 || tries >= RATE_LIMITED_TRIES
+                    || RateLimitBudget.getRemaining(getRateLimitedApi()) != 0) {
+                break;
+            }
+            LOGGER.warn("Twitter rate limit reached while loading {}", url);
+        }
+        Object jsonObj;
+        try {
+            jsonObj = new JSONTokener(response.body()).nextValue();
+        } catch (JSONException e) {
+            throw new IOException("Twitter responded with status " + response.statusCode() + ": " + response.body(), e);
+        }
         JSONArray statuses;
         if (jsonObj instanceof JSONObject) {
             JSONObject json = (JSONObject) jsonObj;
             if (json.has("errors")) {
-                String msg = json.getJSONObject("errors").getString("message");
+                Object errors = json.get("errors");
+                String msg = errors instanceof JSONArray
+                        ? ((JSONArray) errors).getJSONObject(0).optString("message")
+                        : ((JSONObject) errors).optString("message");
                 throw new IOException("Twitter responded with errors: " + msg);
             }
             statuses = json.getJSONArray("statuses");
@@ -169,27 +192,16 @@ public class TwitterRipper extends AbstractJSONRipper {
     @Override
     protected JSONObject getFirstPage() throws IOException {
         getAccessToken();
-
-        switch (albumType) {
-        case ACCOUNT:
-            checkRateLimits("statuses", "/statuses/user_timeline");
-            break;
-        case SEARCH:
-            checkRateLimits("search", "/search/tweets");
-            break;
-        }
-
         return getTweets();
     }
 
     @Override
     protected JSONObject getNextPage(JSONObject doc) throws IOException {
-        try {
-            Thread.sleep(WAIT_TIME);
-        } catch (InterruptedException e) {
-            LOGGER.error("[!] Interrupted while waiting to load more results", e);
+        // Pages are paced by the rate limit, the timeline is over once a page comes back empty
+        if (doc.getJSONArray("tweets").length() == 0) {
+            return null;
         }
-        return currentRequest <= MAX_REQUESTS ? getTweets() : null;
+        return getTweets();
     }
 
     @Override
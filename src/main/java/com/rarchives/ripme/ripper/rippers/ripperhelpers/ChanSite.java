@@ -8,6 +8,10 @@ public class ChanSite {
     public List<String> domains;
     // The domains where the images are hosted.
     public List<String> cdnDomains;
+    // Host of the 4chan style JSON API (<board>/thread/<id>.json), null if the site has none.
+    public String jsonApiHost;
+    // Host serving the files listed by the JSON API (<board>/<tim><ext>).
+    public String jsonMediaHost;
 
     public ChanSite(List<String> Domains, List<String> CdnDomains) {
         if (Domains.isEmpty()) {
@@ -57,6 +61,19 @@ public class ChanSite {
         domains = Domains;
         cdnDomains = Domains;
     }
+    /**
+     * Declares the 4chan style JSON API of this site, used to watch threads.
+     */
+    public ChanSite withJsonApi(String apiHost, String mediaHost) {
+        jsonApiHost = apiHost;
+        jsonMediaHost = mediaHost;
+        return this;
+    }
+
+    public boolean hasJsonApi() {
+        return jsonApiHost != null;
+    }
+
     public List<String> getDomains() {
         return domains;
     }
@@ -1,6 +1,7 @@
 package com.rarchives.ripme.ui;
 
 import com.rarchives.ripme.ripper.AbstractRipper;
+import com.rarchives.ripme.utils.Bandwidth;
 import com.rarchives.ripme.utils.RipUtils;
 import com.rarchives.ripme.utils.Utils;
 import org.apache.logging.log4j.Level;
@@ -97,6 +98,7 @@ public final class MainWindow implements Runnable, RipStatusHandler {
     private static JLabel configSaveDirLabel;
     private static JButton configSaveDirButton;
     private static JTextField configRetriesText;
+    private static JTextField configBandwidthText;
     private static JCheckBox configAutoupdateCheckbox;
     private static JComboBox<String> configLogLevelCombobox;
     private static JCheckBox configURLHistoryCheckbox;
@@ -114,6 +116,7 @@ public final class MainWindow implements Runnable, RipStatusHandler {
     private static JLabel configThreadsLabel;
     private static JLabel configTimeoutLabel;
     private static JLabel configRetriesLabel;
+    private static JLabel configBandwidthLabel;
     // This doesn't really belong here but I have no idea where else to put it
     private static JButton configUrlFileChooserButton;
 
@@ -502,6 +505,8 @@ public final class MainWindow implements Runnable, RipStatusHandler {
         configThreadsText = new JTextField(Integer.toString(Utils.getConfigInteger("threads.size", 3)));
         configTimeoutText = new JTextField(Integer.toString(Utils.getConfigInteger("download.timeout", 60000)));
         configRetriesText = new JTextField(Integer.toString(Utils.getConfigInteger("download.retries", 3)));
+        configBandwidthLabel = new JLabel(Utils.getLocalizedString("bandwidth.limit"), JLabel.RIGHT);
+        configBandwidthText = new JTextField(Integer.toString(Utils.getConfigInteger("bandwidth.limit", 0)));
         configOverwriteCheckbox = addNewCheckbox(Utils.getLocalizedString("overwrite.existing.files"), "file.overwrite",
                 false);
         configAutoupdateCheckbox = addNewCheckbox(Utils.getLocalizedString("auto.update"), "auto.update", true);
@@ -548,14 +553,15 @@ public final class MainWindow implements Runnable, RipStatusHandler {
         addItemToConfigGridBagConstraints(gbc, 2, configThreadsLabel, configThreadsText);
         addItemToConfigGridBagConstraints(gbc, 3, configTimeoutLabel, configTimeoutText);
         addItemToConfigGridBagConstraints(gbc, 4, configRetriesLabel, configRetriesText);
-        addItemToConfigGridBagConstraints(gbc, 5, configOverwriteCheckbox, configSaveOrderCheckbox);
-        addItemToConfigGridBagConstraints(gbc, 6, configPlaySound, configSaveLogs);
-        addItemToConfigGridBagConstraints(gbc, 7, configShowPopup, configSaveURLsOnly);
-        addItemToConfigGridBagConstraints(gbc, 8, configClipboardAutorip, configSaveAlbumTitles);
-        addItemToConfigGridBagConstraints(gbc, 9, configSaveDescriptions, configPreferMp4);
-        addItemToConfigGridBagConstraints(gbc, 10, configWindowPosition, configURLHistoryCheckbox);
-        addItemToConfigGridBagConstraints(gbc, 11, configSelectLangComboBox, configUrlFileChooserButton);
-        addItemToConfigGridBagConstraints(gbc, 12, configSaveDirLabel, configSaveDirButton);
+        addItemToConfigGridBagConstraints(gbc, 5, configBandwidthLabel, configBandwidthText);
+        addItemToConfigGridBagConstraints(gbc, 6, configOverwriteCheckbox, configSaveOrderCheckbox);
+        addItemToConfigGridBagConstraints(gbc, 7, configPlaySound, configSaveLogs);
+        addItemToConfigGridBagConstraints(gbc, 8, configShowPopup, configSaveURLsOnly);
+        addItemToConfigGridBagConstraints(gbc, 9, configClipboardAutorip, configSaveAlbumTitles);
+        addItemToConfigGridBagConstraints(gbc, 10, configSaveDescriptions, configPreferMp4);
+        addItemToConfigGridBagConstraints(gbc, 11, configWindowPosition, configURLHistoryCheckbox);
+        addItemToConfigGridBagConstraints(gbc, 12, configSelectLangComboBox, configUrlFileChooserButton);
+        addItemToConfigGridBagConstraints(gbc, 13, configSaveDirLabel, configSaveDirButton);
 
         emptyPanel = new JPanel();
         emptyPanel.setPreferredSize(new Dimension(0, 0));
@@ -644,6 +650,7 @@ public final class MainWindow implements Runnable, RipStatusHandler {
         configThreadsLabel.setText(Utils.getLocalizedString("max.download.threads"));
         configTimeoutLabel.setText(Utils.getLocalizedString("timeout.mill"));
         configRetriesLabel.setText(Utils.getLocalizedString("retry.download.count"));
+        configBandwidthLabel.setText(Utils.getLocalizedString("bandwidth.limit"));
         configOverwriteCheckbox.setText(Utils.getLocalizedString("overwrite.existing.files"));
         configAutoupdateCheckbox.setText(Utils.getLocalizedString("auto.update"));
         configPlaySound.setText(Utils.getLocalizedString("sound.when.rip.completes"));
@@ -856,6 +863,32 @@ public final class MainWindow implements Runnable, RipStatusHandler {
             Thread t = new Thread(() -> UpdateUtils.updateProgramGUI(configUpdateLabel));
             t.start();
         });
+        // Applied as it is typed, running downloads included
+        configBandwidthText.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                update();
+            }
+
+            private void update() {
+                String limit = configBandwidthText.getText().trim();
+                try {
+                    Bandwidth.setLimit(limit.isEmpty() ? 0 : Integer.parseInt(limit));
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring bandwidth limit {}", limit);
+                }
+            }
+        });
         configLogLevelCombobox.addActionListener(arg0 -> {
             String level = ((JComboBox) arg0.getSource()).getSelectedItem().toString();
             setLogLevel(level);
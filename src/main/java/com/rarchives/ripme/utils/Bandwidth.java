@@ -0,0 +1,227 @@
+package com.rarchives.ripme.utils;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Caps how fast downloads read from the network, in KB/s.
+ * <p>
+ * Limits come from the config. They are read once and again whenever {@link #setLimit(int)}
+ * or {@link #setLimit(String, int)} change them (as the configuration tab and the command
+ * line do), which applies to running downloads right away. 0 means no limit. Downloads
+ * cost nothing extra while no limit is set.
+ * <ul>
+ *     <li>bandwidth.limit caps all downloads together.</li>
+ *     <li>bandwidth.limit.&lt;domain&gt; caps the downloads from a domain and its subdomains.</li>
+ * </ul>
+ * Every limit is a token bucket holding at most a quarter second of transfer. A download
+ * takes tokens for what it read and, when the bucket runs dry, sleeps until the debt is
+ * paid back. Waiting downloads queue up behind each other's debt instead of all waking up
+ * together, which keeps the total rate flat at the cap.
+ */
+public class Bandwidth {
+
+    private static final Logger logger = LogManager.getLogger(Bandwidth.class);
+
+    // How often a capped download gets to read, at most
+    private static final int CHUNKS_PER_SECOND = 10;
+    private static final int MIN_CHUNK = 4 * 1024;
+    private static final String LIMIT_KEY = "bandwidth.limit";
+    private static final String DOMAIN_LIMIT_PREFIX = LIMIT_KEY + ".";
+
+    private static final TokenBucket global = new TokenBucket();
+    // domain from the config -> its bucket
+    private static final Map<String, TokenBucket> domains = new HashMap<>();
+    // The limits from the config, replaced by refresh()
+    private static volatile Limits limits = null;
+
+    private Bandwidth() {
+    }
+
+    /**
+     * Sets the limit for all downloads together, in KB/s; 0 for none.
+     */
+    public static void setLimit(int kilobytesPerSecond) {
+        Utils.setConfigInteger(LIMIT_KEY, Math.max(0, kilobytesPerSecond));
+        refresh();
+        logger.info("Bandwidth limit set to {}", kilobytesPerSecond > 0 ? kilobytesPerSecond + " KB/s" : "none");
+    }
+
+    /**
+     * Sets the limit for downloads from a domain and its subdomains, in KB/s; 0 for none.
+     */
+    public static void setLimit(String domain, int kilobytesPerSecond) {
+        Utils.setConfigInteger(DOMAIN_LIMIT_PREFIX + domain.toLowerCase(Locale.ROOT), Math.max(0, kilobytesPerSecond));
+        refresh();
+    }
+
+    /**
+     * Reads the limits from the config again; needed after changing the bandwidth.* entries
+     * other than through the setters.
+     */
+    public static void refresh() {
+        limits = new Limits();
+    }
+
+    private static Limits limits() {
+        Limits current = limits;
+        if (current == null) {
+            current = new Limits();
+            limits = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return
+     *      True if downloads from this URL are capped.
+     */
+    public static boolean isLimited(URL url) {
+        Limits current = limits();
+        return current.global > 0 || current.domainOf(url) != null;
+    }
+
+    /**
+     * @return
+     *      How many bytes a download from this URL should read at once: small enough that
+     *      a capped download reads several times a second, at most bufferSize.
+     */
+    public static int readSize(URL url, int bufferSize) {
+        Limits current = limits();
+        if (current.isEmpty()) {
+            return bufferSize;
+        }
+        long rate = Long.MAX_VALUE;
+        if (current.global > 0) {
+            rate = current.global;
+        }
+        String domain = current.domainOf(url);
+        if (domain != null) {
+            rate = Math.min(rate, current.domains.get(domain));
+        }
+        if (rate == Long.MAX_VALUE) {
+            return bufferSize;
+        }
+        return (int) Math.max(MIN_CHUNK, Math.min(bufferSize, rate / CHUNKS_PER_SECOND));
+    }
+
+    /**
+     * Accounts for bytes a download just read, sleeping as long as needed to stay under
+     * the limits that apply to it.
+     * @throws InterruptedException
+     *      If the download was interrupted while waiting.
+     */
+    public static void consume(URL url, int bytes) throws InterruptedException {
+        if (bytes <= 0) {
+            return;
+        }
+        Limits current = limits();
+        if (current.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        String domain = current.domainOf(url);
+        if (domain != null) {
+            TokenBucket bucket;
+            synchronized (domains) {
+                bucket = domains.computeIfAbsent(domain, d -> new TokenBucket());
+            }
+            sleep(bucket.take(bytes, current.domains.get(domain), now));
+        }
+        sleep(global.take(bytes, current.global, System.nanoTime()));
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    /**
+     * @return
+     *      The limit under this config key in bytes per second, 0 if there is none.
+     */
+    private static long limitOf(String key) {
+        return Math.max(0, Utils.getConfigInteger(key, 0)) * 1024L;
+    }
+
+    /**
+     * The limits of the config at one point in time, in bytes per second.
+     */
+    private static final class Limits {
+        private final long global;
+        // domain -> its limit, only for domains that have one
+        private final Map<String, Long> domains = new HashMap<>();
+        // host -> the most specific of its domains with a limit, "" if none has one
+        private final Map<String, String> hostDomains = new ConcurrentHashMap<>();
+
+        private Limits() {
+            global = limitOf(LIMIT_KEY);
+            for (String key : Utils.getConfigKeys(LIMIT_KEY)) {
+                long limit = limitOf(key);
+                if (key.startsWith(DOMAIN_LIMIT_PREFIX) && limit > 0) {
+                    domains.put(key.substring(DOMAIN_LIMIT_PREFIX.length()).toLowerCase(Locale.ROOT), limit);
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return global == 0 && domains.isEmpty();
+        }
+
+        /**
+         * @return
+         *      The most specific domain of this URL's host with a limit, or null.
+         */
+        private String domainOf(URL url) {
+            if (domains.isEmpty()) {
+                return null;
+            }
+            String domain = hostDomains.computeIfAbsent(url.getHost().toLowerCase(Locale.ROOT), host -> {
+                String[] parts = host.split("\\.");
+                for (int i = 0; i < parts.length - 1; i++) {
+                    String candidate = String.join(".", Arrays.copyOfRange(parts, i, parts.length));
+                    if (domains.containsKey(candidate)) {
+                        return candidate;
+                    }
+                }
+                return "";
+            });
+            return domain.isEmpty() ? null : domain;
+        }
+    }
+
+    /**
+     * Tokens are bytes. The rate is passed on every take, so it can change at any time.
+     */
+    private static final class TokenBucket {
+        private double tokens = 0;
+        private long lastRefill = System.nanoTime();
+
+        /**
+         * Takes bytes out of the bucket, going into debt if there aren't enough.
+         * @return
+         *      How long the caller has to wait for its bytes, in ns; 0 when unlimited.
+         */
+        private synchronized long take(int bytes, long rate, long now) {
+            if (rate <= 0) {
+                tokens = 0;
+                lastRefill = now;
+                return 0;
+            }
+            double capacity = rate / 4.0;
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+}
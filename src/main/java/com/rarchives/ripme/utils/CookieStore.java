@@ -0,0 +1,341 @@
+package com.rarchives.ripme.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cookies shared by every request ripme makes, across rips and runs.
+ * <p>
+ * Holds the cookies.&lt;domain&gt; entries of the config, parsed once per host, and the
+ * cookies servers set through Set-Cookie. Cookies with an expiry date are saved to
+ * cookies.json in the config directory, so a login survives a restart; session
+ * cookies only live until ripme exits. They are written in the background a few
+ * seconds after a change, and when ripme exits. Cookies are matched by domain only,
+ * path and secure flags are ignored. Set cookies.persist = false to keep nothing on disk.
+ */
+public class CookieStore {
+
+    private static final Logger logger = LogManager.getLogger(CookieStore.class);
+    private static final String COOKIE_FILE = "cookies.json";
+    // Changes arriving within this many seconds are saved together
+    private static final long SAVE_DELAY = 5;
+    // Second level labels under which country code TLDs hand out domains, as in co.uk or com.au
+    private static final Set<String> SECOND_LEVEL_LABELS = new HashSet<>(Arrays.asList(
+            "ac", "co", "com", "edu", "gov", "ne", "net", "or", "org"));
+
+    // domain -> cookie name -> cookie
+    private static final Map<String, Map<String, StoredCookie>> cookies = new HashMap<>();
+    // host -> cookies from the config, with the config value they were parsed from
+    private static final Map<String, ConfigCookies> configCookies = new HashMap<>();
+    private static boolean loaded = false;
+    // Persistent cookies changed since the last save, and whether a save is scheduled
+    private static boolean dirty = false;
+    private static boolean saveScheduled = false;
+    private static ScheduledExecutorService saver = null;
+    // Held while saving, so saves from the scheduler and the shutdown hook don't overtake each other
+    private static final Object saveLock = new Object();
+
+    private CookieStore() {
+    }
+
+    /**
+     * @return
+     *      Cookies to send to this URL: the ones set for its host and parent domains,
+     *      overridden by the ones from the config.
+     */
+    public static synchronized Map<String, String> cookiesFor(URL url) {
+        load();
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        Map<String, String> result = new HashMap<>();
+        long now = System.currentTimeMillis();
+        // parent domains first, so the more specific ones override them
+        String[] parts = host.split("\\.");
+        for (int i = Math.max(0, parts.length - 2); i >= 0; i--) {
+            Map<String, StoredCookie> domainCookies = cookies.get(join(parts, i));
+            if (domainCookies == null) {
+                continue;
+            }
+            domainCookies.values().removeIf(c -> c.expired(now));
+            for (StoredCookie cookie : domainCookies.values()) {
+                result.put(cookie.name, cookie.value);
+            }
+        }
+        result.putAll(getConfigCookies(host));
+        return result;
+    }
+
+    /**
+     * Stores the cookies from the Set-Cookie headers of a response.
+     * @param url
+     *      URL the response came from.
+     * @param setCookieHeaders
+     *      Values of the Set-Cookie headers; may be null.
+     */
+    public static synchronized void capture(URL url, List<String> setCookieHeaders) {
+        if (setCookieHeaders == null || setCookieHeaders.isEmpty()) {
+            return;
+        }
+        load();
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        long now = System.currentTimeMillis();
+        boolean persistentChanged = false;
+        for (String header : setCookieHeaders) {
+            List<HttpCookie> parsed;
+            try {
+                parsed = HttpCookie.parse(header);
+            } catch (IllegalArgumentException e) {
+                logger.debug("Ignoring malformed cookie from {}: {}", host, header);
+                continue;
+            }
+            for (HttpCookie cookie : parsed) {
+                String domain = cookie.getDomain() == null ? host : cookie.getDomain().toLowerCase(Locale.ROOT);
+                if (domain.startsWith(".")) {
+                    domain = domain.substring(1);
+                }
+                if (!host.equals(domain) && !host.endsWith("." + domain)) {
+                    // servers may only set cookies for themselves and their parent domains
+                    continue;
+                }
+                if (!host.equals(domain) && isPublicSuffix(domain)) {
+                    // ... but not for a whole TLD like com or co.uk
+                    logger.debug("Ignoring cookie {} from {} for public suffix {}", cookie.getName(), host, domain);
+                    continue;
+                }
+                long maxAge = cookie.getMaxAge();
+                long expires = maxAge < 0 ? StoredCookie.SESSION : now + maxAge * 1000;
+                Map<String, StoredCookie> domainCookies = cookies.computeIfAbsent(domain, d -> new HashMap<>());
+                StoredCookie previous;
+                if (maxAge == 0) {
+                    previous = domainCookies.remove(cookie.getName());
+                } else {
+                    previous = domainCookies.put(cookie.getName(), new StoredCookie(cookie.getName(), cookie.getValue(), expires));
+                }
+                persistentChanged |= expires != StoredCookie.SESSION || (previous != null && previous.expires != StoredCookie.SESSION);
+            }
+        }
+        if (persistentChanged) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Stores the cookies set by a response, given all its headers
+     * (as returned by URLConnection.getHeaderFields()).
+     */
+    public static void capture(URL url, Map<String, List<String>> headerFields) {
+        for (Map.Entry<String, List<String>> header : headerFields.entrySet()) {
+            if ("Set-Cookie".equalsIgnoreCase(header.getKey())) {
+                capture(url, header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forgets every cookie stored for a domain (not the ones from the config).
+     */
+    public static synchronized void clear(String domain) {
+        load();
+        if (cookies.remove(domain.toLowerCase(Locale.ROOT)) != null) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * @return
+     *      True if anyone can register a domain directly below this one, as with com or co.uk.
+     *      Only knows the common country code second levels, not the full public suffix list.
+     */
+    private static boolean isPublicSuffix(String domain) {
+        String[] parts = domain.split("\\.");
+        if (parts.length == 1) {
+            return true;
+        }
+        return parts.length == 2 && parts[1].length() == 2 && SECOND_LEVEL_LABELS.contains(parts[0]);
+    }
+
+    private static Map<String, String> getConfigCookies(String host) {
+        ConfigCookies cached = configCookies.get(host);
+        // if url is www.reddit.com, we should also use cookies from reddit.com;
+        // this rule is applied for all subdomains (for all rippers); e.g. also
+        // old.reddit.com, new.reddit.com
+        String[] parts = host.split("\\.");
+        String cookieStr = "";
+        String cookieDomain = "";
+        for (int i = 0; i < parts.length - 1; i++) {
+            cookieDomain = join(parts, i);
+            cookieStr = Utils.getConfigString("cookies." + cookieDomain, "");
+            if (!cookieStr.equals("")) {
+                break;
+            }
+        }
+        if (cached != null && cached.raw.equals(cookieStr)) {
+            return cached.cookies;
+        }
+        Map<String, String> parsed = new HashMap<>();
+        if (!cookieStr.equals("")) {
+            parsed = RipUtils.getCookiesFromString(cookieStr.trim());
+            logger.info("Loaded cookies for {} from config entry cookies.{}", host, cookieDomain);
+        }
+        configCookies.put(host, new ConfigCookies(cookieStr, parsed));
+        return parsed;
+    }
+
+    private static String join(String[] parts, int from) {
+        StringBuilder sb = new StringBuilder(parts[from]);
+        for (int i = from + 1; i < parts.length; i++) {
+            sb.append('.').append(parts[i]);
+        }
+        return sb.toString();
+    }
+
+    private static Path getCookieFile() {
+        return Paths.get(Utils.getConfigDir(), COOKIE_FILE);
+    }
+
+    private static void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path file = getCookieFile();
+        if (!Utils.getConfigBoolean("cookies.persist", true) || !Files.exists(file)) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            long now = System.currentTimeMillis();
+            for (String domain : json.keySet()) {
+                JSONObject domainJSON = json.getJSONObject(domain);
+                Map<String, StoredCookie> domainCookies = new HashMap<>();
+                for (String name : domainJSON.keySet()) {
+                    JSONObject cookie = domainJSON.getJSONObject(name);
+                    StoredCookie stored = new StoredCookie(name, cookie.getString("value"), cookie.getLong("expires"));
+                    if (!stored.expired(now)) {
+                        domainCookies.put(name, stored);
+                    }
+                }
+                cookies.put(domain, domainCookies);
+            }
+            logger.debug("Loaded cookies for {} domains from {}", cookies.size(), file);
+        } catch (IOException | JSONException e) {
+            logger.warn("Unable to load cookies from {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the persistent cookies as changed, saving them a few seconds from now
+     * (and at the latest when ripme exits), so a burst of Set-Cookie headers costs one write.
+     */
+    private static void scheduleSave() {
+        if (!Utils.getConfigBoolean("cookies.persist", true)) {
+            return;
+        }
+        dirty = true;
+        if (saveScheduled) {
+            return;
+        }
+        if (saver == null) {
+            saver = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "cookie-saver");
+                t.setDaemon(true);
+                return t;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(CookieStore::save, "cookie-saver-exit"));
+        }
+        saveScheduled = true;
+        saver.schedule(CookieStore::save, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the persistent cookies to cookies.json if they changed. Only building the
+     * JSON holds the store's lock, requests don't wait on the disk.
+     */
+    private static void save() {
+        synchronized (saveLock) {
+            String content;
+            synchronized (CookieStore.class) {
+                saveScheduled = false;
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                JSONObject json = new JSONObject();
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, Map<String, StoredCookie>> domain : cookies.entrySet()) {
+                    JSONObject domainJSON = new JSONObject();
+                    for (StoredCookie cookie : domain.getValue().values()) {
+                        if (cookie.expires != StoredCookie.SESSION && !cookie.expired(now)) {
+                            domainJSON.put(cookie.name, new JSONObject().put("value", cookie.value).put("expires", cookie.expires));
+                        }
+                    }
+                    if (domainJSON.length() > 0) {
+                        json.put(domain.getKey(), domainJSON);
+                    }
+                }
+                content = json.toString(2);
+            }
+            writeCookieFile(content);
+        }
+    }
+
+    private static void writeCookieFile(String content) {
+        Path file = getCookieFile();
+        try {
+            Path tmp = file.resolveSibling(COOKIE_FILE + ".tmp");
+            Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Unable to save cookies to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static final class StoredCookie {
+        private static final long SESSION = -1;
+
+        private final String name;
+        private final String value;
+        // epoch millis, or SESSION
+        private final long expires;
+
+        private StoredCookie(String name, String value, long expires) {
+            this.name = name;
+            this.value = value;
+            this.expires = expires;
+        }
+
+        private boolean expired(long now) {
+            return expires != SESSION && expires <= now;
+        }
+    }
+
+    private static final class ConfigCookies {
+        private final String raw;
+        private final Map<String, String> cookies;
+
+        private ConfigCookies(String raw, Map<String, String> cookies) {
+            this.raw = raw;
+            this.cookies = cookies;
+        }
+    }
+}
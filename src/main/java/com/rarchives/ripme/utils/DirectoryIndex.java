@@ -0,0 +1,183 @@
+package com.rarchives.ripme.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory listing of a directory, built with a single directory scan.
+ * <p>
+ * Answers "does this file exist" (exactly, ignoring the extension, or ignoring case)
+ * without touching the filesystem again, which matters on network filesystems where
+ * every Files.exists() is a round-trip. Ripme keeps the index up to date through
+ * {@link #fileAdded(Path)} and {@link #fileRemoved(Path)} as it writes files;
+ * {@link #invalidate(Path)} drops indexes so changes made by others are picked up.
+ * Only the most recently used indexes are kept, see MAX_INDEXES.
+ */
+public class DirectoryIndex {
+
+    private static final Logger LOGGER = LogManager.getLogger(DirectoryIndex.class);
+    // Enough for the directories of the rips running at once and their subdirectories
+    private static final int MAX_INDEXES = 64;
+    private static final Map<Path, DirectoryIndex> indexes = Collections.synchronizedMap(
+            new LinkedHashMap<Path, DirectoryIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, DirectoryIndex> eldest) {
+                    return size() > MAX_INDEXES;
+                }
+            });
+    // Windows and macOS file systems don't tell "a.jpg" and "A.jpg" apart by default
+    private static final boolean CASE_INSENSITIVE = Utils.isWindows() || Utils.isMacOS();
+
+    private final Path directory;
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    // file names without their last extension
+    private final Set<String> stems = ConcurrentHashMap.newKeySet();
+    // lower case file name -> file name
+    private final Map<String, String> lowerCaseNames = new ConcurrentHashMap<>();
+
+    private DirectoryIndex(Path directory) {
+        this.directory = directory;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                add(entry.getFileName().toString());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to list {}: {}", directory, e.getMessage());
+        }
+        LOGGER.debug("Indexed {} entries in {}", names.size(), directory);
+    }
+
+    /**
+     * Gets the index of a directory, scanning it on first use.
+     * @param directory
+     *      The directory; does not need to exist.
+     */
+    public static DirectoryIndex of(Path directory) {
+        Path key = key(directory);
+        DirectoryIndex index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        // Scan outside the lock, other directories don't have to wait for this one
+        index = new DirectoryIndex(key);
+        DirectoryIndex raced = indexes.putIfAbsent(key, index);
+        return raced != null ? raced : index;
+    }
+
+    /**
+     * @return
+     *      True if the file or directory exists according to the index of its parent.
+     *      On case-insensitive file systems a name differing only in case counts as existing.
+     */
+    public static boolean exists(Path path) {
+        Path parent = key(path).getParent();
+        if (parent == null || path.getFileName() == null) {
+            return Files.exists(path);
+        }
+        DirectoryIndex index = of(parent);
+        String name = path.getFileName().toString();
+        return index.contains(name) || (CASE_INSENSITIVE && index.findIgnoreCase(name) != null);
+    }
+
+    /**
+     * Records a file or directory created by ripme.
+     */
+    public static void fileAdded(Path path) {
+        Path parent = key(path).getParent();
+        if (parent != null && path.getFileName() != null) {
+            DirectoryIndex index = indexes.get(parent);
+            if (index != null) {
+                index.add(path.getFileName().toString());
+            }
+        }
+    }
+
+    /**
+     * Records a file or directory deleted by ripme.
+     */
+    public static void fileRemoved(Path path) {
+        Path parent = key(path).getParent();
+        if (parent != null && path.getFileName() != null) {
+            DirectoryIndex index = indexes.get(parent);
+            if (index != null) {
+                index.remove(path.getFileName().toString());
+            }
+        }
+        invalidate(path);
+    }
+
+    /**
+     * Forgets the index of a directory and of all directories below it;
+     * they are scanned again on next use.
+     */
+    public static void invalidate(Path directory) {
+        Path root = key(directory);
+        indexes.keySet().removeIf(p -> p.startsWith(root));
+    }
+
+    /**
+     * @return
+     *      True if the directory contains an entry with exactly this name.
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @return
+     *      True if the directory contains this name, or this name followed by any extension.
+     */
+    public boolean containsIgnoringExtension(String name) {
+        return names.contains(name) || stems.contains(name);
+    }
+
+    /**
+     * @return
+     *      The name of the entry matching name ignoring case, or null if there is none.
+     */
+    public String findIgnoreCase(String name) {
+        return lowerCaseNames.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void add(String name) {
+        names.add(name);
+        stems.add(stem(name));
+        lowerCaseNames.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+    }
+
+    private void remove(String name) {
+        names.remove(name);
+        String stem = stem(name);
+        if (names.stream().noneMatch(n -> stem(n).equals(stem))) {
+            stems.remove(stem);
+        }
+        lowerCaseNames.remove(name.toLowerCase(Locale.ROOT), name);
+    }
+
+    private static String stem(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,153 @@
+package com.rarchives.ripme.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A GraphQL connection over a WebSocket, kept open for as long as a rip needs it.
+ * <p>
+ * Queries go out one after the other over the same connection. The frames answering a
+ * query are parsed as they come in and handed back together once the last one arrived;
+ * the caller waits without spinning, for at most the timeout between two frames. If the
+ * server closed the connection since the last query, the next one reconnects.
+ */
+public class GraphQLWebSocket implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(GraphQLWebSocket.class);
+
+    // Put in the queue when the connection closes, to wake up the waiting query
+    private static final JSONObject CLOSED = new JSONObject();
+
+    private final URI uri;
+    private final long timeout;
+    private final BlockingQueue<JSONObject> frames = new LinkedBlockingQueue<>();
+    private volatile WebSocketClient client;
+    private volatile String error;
+
+    /**
+     * @param timeout
+     *      How long to wait for the connection and for each frame, in ms.
+     */
+    public GraphQLWebSocket(URI uri, long timeout) {
+        this.uri = uri;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends a query and waits for its answer.
+     * @param isLast
+     *      Tells the frame ending the answer.
+     * @return
+     *      The frames answering the query, in the order they came in, the last one included.
+     * @throws IOException
+     *      If the connection failed or closed, or a frame took longer than the timeout.
+     *      The connection is closed whenever a query fails, isLast throwing included.
+     */
+    public synchronized List<JSONObject> query(JSONObject query, Predicate<JSONObject> isLast) throws IOException {
+        WebSocketClient connection = connect();
+        boolean answered = false;
+        try {
+            connection.send(query.toString());
+            List<JSONObject> answer = new ArrayList<>();
+            while (true) {
+                JSONObject frame;
+                try {
+                    frame = frames.poll(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for " + uri, e);
+                }
+                if (frame == null) {
+                    throw new IOException("No answer from " + uri + " in " + timeout + "ms");
+                }
+                if (frame == CLOSED) {
+                    throw new IOException("Connection to " + uri + " closed" + (error == null ? "" : ": " + error));
+                }
+                answer.add(frame);
+                if (isLast.test(frame)) {
+                    answered = true;
+                    return answer;
+                }
+            }
+        } finally {
+            if (!answered) {
+                // The rest of this answer could still come in, don't mix it up with the next one
+                close();
+            }
+        }
+    }
+
+    private WebSocketClient connect() throws IOException {
+        WebSocketClient connection = client;
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        frames.clear();
+        error = null;
+        connection = new WebSocketClient(uri) {
+            @Override
+            public void onOpen(ServerHandshake serverHandshake) {
+                logger.debug("Connected to {}", uri);
+            }
+
+            @Override
+            public void onMessage(String message) {
+                try {
+                    frames.add(new JSONObject(message));
+                } catch (JSONException e) {
+                    logger.warn("Skipping frame from {} that is not JSON: {}", uri, message);
+                }
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+                logger.debug("Connection to {} closed ({} {})", uri, code, reason);
+                // A connection that was replaced already has nobody waiting on it
+                if (client == this) {
+                    frames.add(CLOSED);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error = e.getMessage();
+                logger.error("WebSocket error, server reported {}", e.getMessage());
+            }
+        };
+        client = connection;
+        try {
+            if (!connection.connectBlocking(timeout, TimeUnit.MILLISECONDS)) {
+                client = null;
+                throw new IOException("Unable to connect to " + uri + (error == null ? "" : ": " + error));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            client = null;
+            throw new IOException("Interrupted while connecting to " + uri, e);
+        }
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        WebSocketClient connection = client;
+        client = null;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.rarchives.ripme.utils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How many downloads may run at once against each host, tuned from what the host does
+ * with them, the way TCP tunes its congestion window (AIMD).
+ * <p>
+ * Downloads are measured in windows of a few seconds. When a window kept the host busy
+ * at its limit, moved more bytes per second than the one before and latency did not
+ * balloon, the limit grows by one. A 429, 503, 504 or a timeout halves it, at most once
+ * per window since the downloads already in flight will report the same trouble.
+ * The limit stays between download.concurrency.min and download.concurrency.max; hosts
+ * start at threads.size, or at what was learned about them in an earlier run, which is
+ * kept in concurrency.json in the config directory. That file is written in the
+ * background a few seconds after a limit changes, and when ripme exits. Set
+ * download.concurrency.adaptive = false to only use threads.size.
+ */
+public class HostConcurrency {
+
+    private static final Logger logger = LogManager.getLogger(HostConcurrency.class);
+    private static final String LIMITS_FILE = "concurrency.json";
+
+    private static final long WINDOW = TimeUnit.SECONDS.toMillis(5);
+    // Throughput has to beat the previous window by this much to count as better
+    private static final double IMPROVEMENT = 1.05;
+    // Average latency above this multiple of the best seen means the host is queueing requests
+    private static final double LATENCY_INFLATION = 2.0;
+    // Limit changes within this many seconds are saved together
+    private static final long SAVE_DELAY = 5;
+
+    private static final Map<String, HostState> hosts = new HashMap<>();
+    private static Map<String, Integer> learned = null;
+    // Learned limits changed since the last save, and whether a save is scheduled; guarded by hosts
+    private static boolean dirty = false;
+    private static boolean saveScheduled = false;
+    private static ScheduledExecutorService saver = null;
+    // Held while saving, so saves from the scheduler and the shutdown hook don't overtake each other
+    private static final Object saveLock = new Object();
+
+    private HostConcurrency() {
+    }
+
+    /**
+     * @return
+     *      True unless download.concurrency.adaptive is off.
+     */
+    public static boolean isEnabled() {
+        return Utils.getConfigBoolean("download.concurrency.adaptive", true);
+    }
+
+    /**
+     * @return
+     *      How many threads a download pool needs so that no host is held back by the pool
+     *      rather than by its limit.
+     */
+    public static int getPoolSize() {
+        int threads = Utils.getConfigInteger("threads.size", 10);
+        return isEnabled() ? Math.max(threads, getMaxLimit()) : threads;
+    }
+
+    /**
+     * Waits until one more download may run against this URL's host. Every call must be
+     * followed by a call to {@link #release(URL)}.
+     */
+    public static void acquire(URL url) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        String host = hostOf(url);
+        synchronized (hosts) {
+            HostState state = stateFor(host);
+            while (state.inFlight >= (int) state.limit) {
+                try {
+                    hosts.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a download slot on " + host, e);
+                }
+            }
+            state.inFlight++;
+            state.peakInFlight = Math.max(state.peakInFlight, state.inFlight);
+        }
+    }
+
+    public static void release(URL url) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (hosts) {
+            HostState state = stateFor(hostOf(url));
+            state.inFlight = Math.max(0, state.inFlight - 1);
+            hosts.notifyAll();
+        }
+    }
+
+    /**
+     * Records a finished download.
+     * @param bytes
+     *      Size of the download.
+     * @param latency
+     *      Time until the response headers came in, in ms.
+     */
+    public static void succeeded(URL url, long bytes, long latency) {
+        if (!isEnabled()) {
+            return;
+        }
+        String host = hostOf(url);
+        synchronized (hosts) {
+            HostState state = stateFor(host);
+            long now = System.currentTimeMillis();
+            state.windowBytes += bytes;
+            state.windowLatency += latency;
+            state.windowDownloads++;
+            state.bestLatency = Math.min(state.bestLatency, Math.max(1, latency));
+            long elapsed = now - state.windowStart;
+            if (elapsed < WINDOW || state.windowDownloads < (int) state.limit) {
+                return;
+            }
+            double throughput = state.windowBytes * 1000.0 / elapsed;
+            double averageLatency = (double) state.windowLatency / state.windowDownloads;
+            boolean saturated = state.peakInFlight >= (int) state.limit;
+            if (saturated && throughput > state.lastThroughput * IMPROVEMENT
+                    && averageLatency <= state.bestLatency * LATENCY_INFLATION
+                    && state.limit + 1 <= getMaxLimit()) {
+                state.limit += 1;
+                logger.debug("Raising concurrent downloads from {} to {} ({} KB/s)",
+                        host, (int) state.limit, (long) throughput / 1024);
+                learn(host, (int) state.limit);
+                hosts.notifyAll();
+            }
+            state.lastThroughput = throughput;
+            state.startWindow(now);
+        }
+    }
+
+    /**
+     * Records that the host pushed back: a 429, 503 or 504, or a timeout.
+     */
+    public static void congested(URL url) {
+        if (!isEnabled()) {
+            return;
+        }
+        String host = hostOf(url);
+        synchronized (hosts) {
+            HostState state = stateFor(host);
+            long now = System.currentTimeMillis();
+            if (now - state.lastDecrease < WINDOW) {
+                return;
+            }
+            state.lastDecrease = now;
+            state.limit = Math.max(getMinLimit(), Math.floor(state.limit / 2));
+            // Probe upwards again from the new limit
+            state.lastThroughput = 0;
+            state.startWindow(now);
+            logger.info("[!] {} is overloaded, lowering concurrent downloads to {}", host, (int) state.limit);
+            learn(host, (int) state.limit);
+        }
+    }
+
+    /**
+     * @return
+     *      The current limit for this URL's host.
+     */
+    public static int getLimit(URL url) {
+        synchronized (hosts) {
+            return (int) stateFor(hostOf(url)).limit;
+        }
+    }
+
+    private static int getMinLimit() {
+        return Math.max(1, Utils.getConfigInteger("download.concurrency.min", 1));
+    }
+
+    private static int getMaxLimit() {
+        return Math.max(getMinLimit(), Utils.getConfigInteger("download.concurrency.max", 16));
+    }
+
+    private static HostState stateFor(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) {
+            Integer start = getLearned().get(host);
+            if (start == null) {
+                start = Utils.getConfigInteger("threads.size", 10);
+            }
+            state = new HostState(Math.min(getMaxLimit(), Math.max(getMinLimit(), start)));
+            hosts.put(host, state);
+        }
+        return state;
+    }
+
+    private static String hostOf(URL url) {
+        return url.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    private static Path getLimitsFile() {
+        return Paths.get(Utils.getConfigDir(), LIMITS_FILE);
+    }
+
+    private static Map<String, Integer> getLearned() {
+        if (learned != null) {
+            return learned;
+        }
+        learned = new HashMap<>();
+        Path file = getLimitsFile();
+        if (!Utils.getConfigBoolean("download.concurrency.persist", true) || !Files.exists(file)) {
+            return learned;
+        }
+        try {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            for (String host : json.keySet()) {
+                learned.put(host, json.getInt(host));
+            }
+        } catch (IOException | JSONException e) {
+            logger.warn("Unable to load download limits from {}: {}", file, e.getMessage());
+        }
+        return learned;
+    }
+
+    /**
+     * Remembers the limit of a host; called while holding the hosts lock.
+     */
+    private static void learn(String host, int limit) {
+        getLearned().put(host, limit);
+        scheduleSave();
+    }
+
+    /**
+     * Marks the learned limits as changed, saving them a few seconds from now (and at the
+     * latest when ripme exits), so downloads never wait on the disk.
+     */
+    private static void scheduleSave() {
+        if (!Utils.getConfigBoolean("download.concurrency.persist", true)) {
+            return;
+        }
+        dirty = true;
+        if (saveScheduled) {
+            return;
+        }
+        if (saver == null) {
+            saver = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "concurrency-saver");
+                t.setDaemon(true);
+                return t;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(HostConcurrency::save, "concurrency-saver-exit"));
+        }
+        saveScheduled = true;
+        saver.schedule(HostConcurrency::save, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the learned limits to concurrency.json if they changed. Only building the
+     * JSON holds the hosts lock.
+     */
+    private static void save() {
+        synchronized (saveLock) {
+            String content;
+            synchronized (hosts) {
+                saveScheduled = false;
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                content = new JSONObject(learned).toString(2);
+            }
+            Path file = getLimitsFile();
+            try {
+                Path tmp = file.resolveSibling(LIMITS_FILE + ".tmp");
+                Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.warn("Unable to save download limits to {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static final class HostState {
+        private double limit;
+        private int inFlight = 0;
+        private long lastDecrease = 0;
+        private double lastThroughput = 0;
+        private long bestLatency = Long.MAX_VALUE;
+
+        // Current window
+        private long windowStart;
+        private long windowBytes;
+        private long windowLatency;
+        private int windowDownloads;
+        private int peakInFlight;
+
+        private HostState(double limit) {
+            this.limit = limit;
+            startWindow(System.currentTimeMillis());
+        }
+
+        private void startWindow(long now) {
+            windowStart = now;
+            windowBytes = 0;
+            windowLatency = 0;
+            windowDownloads = 0;
+            peakInFlight = inFlight;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.rarchives.ripme.utils;
 
 import com.rarchives.ripme.ripper.AbstractRipper;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
@@ -16,7 +15,9 @@ import org.jsoup.nodes.Document;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -28,6 +29,13 @@ public class Http {
 
     private static final int TIMEOUT = Utils.getConfigInteger("page.timeout", 5 * 1000);
     private static final Logger logger = LogManager.getLogger(Http.class);
+    // URL -> where its redirects end up, see finalURL()
+    private static final Map<String, URL> redirects = Collections.synchronizedMap(new LinkedHashMap<String, URL>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, URL> eldest) {
+            return size() > 1000;
+        }
+    });
 
     private int retries;
     private final String url;
@@ -60,50 +68,14 @@ public class Http {
         connection.timeout(TIMEOUT);
         connection.maxBodySize(0);
 
-        // Extract cookies from config entry:
+        // Cookies from config entries and from earlier responses, see CookieStore
         // Example config entry:
         // cookies.reddit.com = reddit_session=<value>; other_cookie=<value>
-        connection.cookies(cookiesForURL(this.url));
-    }
-
-    private Map<String, String> cookiesForURL(String u) {
-        Map<String, String> cookiesParsed = new HashMap<>();
-
-        String cookieDomain = "";
         try {
-            URL parsed = new URL(u);
-            String cookieStr = "";
-
-            String[] parts = parsed.getHost().split("\\.");
-
-            // if url is www.reddit.com, we should also use cookies from reddit.com;
-            // this rule is applied for all subdomains (for all rippers); e.g. also
-            // old.reddit.com, new.reddit.com
-            while (parts.length > 1) {
-                String domain = String.join(".", parts);
-                // Try to get cookies for this host from config
-                logger.info("Trying to load cookies from config for " + domain);
-                cookieStr = Utils.getConfigString("cookies." + domain, "");
-                if (!cookieStr.equals("")) {
-                    cookieDomain = domain;
-                    // we found something, start parsing
-                    break;
-                }
-                parts = (String[]) ArrayUtils.remove(parts, 0);
-            }
-
-            if (!cookieStr.equals("")) {
-                cookiesParsed = RipUtils.getCookiesFromString(cookieStr.trim());
-            }
+            connection.cookies(CookieStore.cookiesFor(new URL(this.url)));
         } catch (MalformedURLException e) {
-            logger.warn("Parsing url " + u + " while getting cookies", e);
+            logger.warn("Parsing url {} while getting cookies", this.url, e);
         }
-
-        if (cookiesParsed.size() > 0) {
-            logger.info("Cookies for " + cookieDomain + " have been added to this request");
-        }
-
-        return cookiesParsed;
     }
 
     // Setters
@@ -157,6 +129,11 @@ public class Http {
         return data(data);
     }
 
+    public Http requestBody(String body) {
+        connection.requestBody(body);
+        return this;
+    }
+
     public Http method(Method method) {
         connection.method(method);
         return this;
@@ -189,33 +166,100 @@ public class Http {
         return new JSONArray(jsonArray);
     }
 
-    public Response response() throws IOException {
-        Response response;
-        IOException lastException = null;
-        int retries = this.retries;
-        while (--retries >= 0) {
-            try {
-                response = connection.execute();
-                return response;
-            } catch (IOException e) {
-                // Warn users about possibly fixable permission error
-                if (e instanceof org.jsoup.HttpStatusException) {
-                    HttpStatusException ex = (HttpStatusException) e;
-
-                    // These status codes might indicate missing cookies
-                    //     401 Unauthorized
-                    //     403 Forbidden
+    /**
+     * Follows the redirects of this URL without downloading what is behind it.
+     * Sends a HEAD request, or a GET that stops after the headers when the server
+     * does not allow HEAD. Results are cached.
+     * @return
+     *      The URL the redirects end at.
+     */
+    public URL finalURL() throws IOException {
+        URL cached = redirects.get(url);
+        if (cached != null) {
+            return cached;
+        }
+        ignoreContentType();
+        URL result;
+        try {
+            connection.method(Method.HEAD);
+            result = response().url();
+        } catch (IOException e) {
+            if (!(e.getCause() instanceof HttpStatusException)) {
+                throw e;
+            }
+            int status = ((HttpStatusException) e.getCause()).getStatusCode();
+            if (status != 405 && status != 501) {
+                throw e;
+            }
+            connection.method(Method.GET).maxBodySize(1);
+            Response response = response();
+            response.bodyAsBytes();
+            result = response.url();
+        }
+        redirects.put(url, result);
+        return result;
+    }
 
-                    int status = ex.getStatusCode();
-                    if (status == 401 || status == 403) {
-                        throw new IOException("Failed to load " + url + ": Status Code " + status + ". You might be able to circumvent this error by setting cookies for this domain", e);
+    /**
+     * Executes the request, retrying errors that can go away as {@link RetryPolicy} says.
+     */
+    public Response response() throws IOException {
+        URL target = new URL(url);
+        boolean ignoreHttpErrors = connection.request().ignoreHttpErrors();
+        // Error responses are checked here, so their status and Retry-After can be read
+        connection.ignoreHttpErrors(true);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                RetryPolicy.acquire(target);
+                // Picked again on every attempt, so a failed proxy is replaced by another one
+                java.net.Proxy proxy = ProxyRouter.select(target);
+                if (proxy != null) {
+                    connection.proxy(proxy);
+                }
+                Response response;
+                try {
+                    response = connection.execute();
+                } catch (IOException e) {
+                    logger.warn("Error while loading " + url, e);
+                    boolean retryable = RetryPolicy.isRetryable(e);
+                    if (retryable) {
+                        RetryPolicy.failed(target);
+                        ProxyRouter.failed(target, proxy);
+                    }
+                    if (!retryable || attempt >= retries || !RetryPolicy.backoff(target, attempt, (String) null)) {
+                        throw new IOException("Failed to load " + url + " after " + attempt + " attempts", e);
                     }
+                    continue;
+                }
+                CookieStore.capture(response.url(), response.headers("Set-Cookie"));
+                int status = response.statusCode();
+                ProxyRouter.report(target, proxy, status, response.header("Retry-After"));
+                if (RetryPolicy.isRetryable(status)) {
+                    RetryPolicy.failed(target);
+                } else {
+                    RetryPolicy.succeeded(target);
+                }
+                if (status < 400 || ignoreHttpErrors) {
+                    return response;
+                }
+                HttpStatusException e = new HttpStatusException("HTTP error fetching URL", status, url);
+
+                // Warn users about possibly fixable permission error
+                // These status codes might indicate missing cookies
+                //     401 Unauthorized
+                //     403 Forbidden
+                if (status == 401 || status == 403) {
+                    throw new IOException("Failed to load " + url + ": Status Code " + status + ". You might be able to circumvent this error by setting cookies for this domain", e);
                 }
 
                 logger.warn("Error while loading " + url, e);
-                lastException = e;
+                if (!RetryPolicy.isRetryable(status) || attempt >= retries
+                        || !RetryPolicy.backoff(target, attempt, response.header("Retry-After"))) {
+                    throw new IOException("Failed to load " + url + " after " + attempt + " attempts", e);
+                }
             }
+        } finally {
+            connection.ignoreHttpErrors(ignoreHttpErrors);
         }
-        throw new IOException("Failed to load " + url + " after " + this.retries + " attempts", lastException);
     }
 }
@@ -0,0 +1,167 @@
+package com.rarchives.ripme.utils;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Resolves links to the files behind them ({@link RipUtils#getFilesFromURL(URL)}) off the
+ * caller's thread.
+ * <p>
+ * Every host gets its own small pool (resolve.threads.per_host), so a slow host cannot
+ * hold up links to the others. At most resolve.queue.size links wait in a pool; when it
+ * is full the caller resolves the link itself, which slows it down to the pool's pace.
+ * Results are cached for resolve.cache.ttl seconds, for at
+ * most resolve.cache.size links, and shared across rips. Asking for a link that is
+ * already being resolved returns the pending result instead of fetching it again.
+ */
+public class LinkResolver {
+
+    private static final Logger logger = LogManager.getLogger(LinkResolver.class);
+
+    private static final Map<String, ExecutorService> pools = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<List<URL>>> inFlight = new ConcurrentHashMap<>();
+    private static final Map<String, CachedLinks> cache = new LinkedHashMap<String, CachedLinks>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLinks> eldest) {
+            return size() > Utils.getConfigInteger("resolve.cache.size", 1000);
+        }
+    };
+
+    private LinkResolver() {
+    }
+
+    /**
+     * Resolves a link in the background.
+     * @param url
+     *      Link to a page, album or file.
+     * @return
+     *      The files behind the link; an empty list if it could not be resolved.
+     */
+    public static CompletableFuture<List<URL>> resolve(URL url) {
+        String key = url.toExternalForm();
+        List<URL> cached = getCached(key);
+        if (cached != null) {
+            logger.debug("Resolved {} from cache", url);
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<List<URL>> result = new CompletableFuture<>();
+        CompletableFuture<List<URL>> pending = inFlight.putIfAbsent(key, result);
+        if (pending != null) {
+            logger.debug("Waiting for pending resolution of {}", url);
+            return pending;
+        }
+        try {
+            poolFor(url).execute(() -> {
+                try {
+                    List<URL> files = Collections.unmodifiableList(RipUtils.getFilesFromURL(url));
+                    // Failures are not cached, the host may be back on the next try
+                    if (!files.isEmpty()) {
+                        putCached(key, files);
+                    }
+                    result.complete(files);
+                } catch (RuntimeException e) {
+                    logger.error("[!] Exception while resolving {}", url, e);
+                    result.complete(Collections.emptyList());
+                } finally {
+                    inFlight.remove(key, result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a link and waits for the result, sharing the cache with {@link #resolve(URL)}.
+     */
+    public static List<URL> get(URL url) {
+        try {
+            return resolve(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("[!] Exception while resolving {}", url, e.getCause());
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<URL> getCached(String key) {
+        synchronized (cache) {
+            CachedLinks links = cache.get(key);
+            if (links == null) {
+                return null;
+            }
+            if (links.expires < System.currentTimeMillis()) {
+                cache.remove(key);
+                return null;
+            }
+            return links.files;
+        }
+    }
+
+    private static void putCached(String key, List<URL> files) {
+        long ttl = TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("resolve.cache.ttl", 3600));
+        synchronized (cache) {
+            cache.put(key, new CachedLinks(files, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    private static ExecutorService poolFor(URL url) {
+        return pools.computeIfAbsent(hostOf(url), host -> {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(1, Utils.getConfigInteger("resolve.threads.per_host", 4));
+            return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(getQueueSize()), r -> {
+                        Thread t = new Thread(r, "resolve-" + host + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        });
+    }
+
+    /**
+     * @return
+     *      How many links may wait to be resolved, per host pool and per caller.
+     */
+    public static int getQueueSize() {
+        return Math.max(1, Utils.getConfigInteger("resolve.queue.size", 256));
+    }
+
+    /**
+     * @return
+     *      The last two labels of the host, so i.imgur.com and imgur.com share a pool.
+     */
+    private static String hostOf(URL url) {
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        int last = host.lastIndexOf('.');
+        int secondLast = last > 0 ? host.lastIndexOf('.', last - 1) : -1;
+        return secondLast >= 0 ? host.substring(secondLast + 1) : host;
+    }
+
+    private static final class CachedLinks {
+        private final List<URL> files;
+        private final long expires;
+
+        private CachedLinks(List<URL> files, long expires) {
+            this.files = files;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.rarchives.ripme.utils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Known mirrors of download hosts, and how fast each of them answers.
+ * <p>
+ * A mirror is declared as a URL prefix that can be swapped for another one, e.g. one CDN
+ * host for another serving the same paths. Downloads use the latency of each host (time
+ * to the response headers) to try the fastest known mirror first, and to decide how long
+ * to wait on a mirror before hedging with the next one: the download.hedge.percentile
+ * of its recent latencies, or download.hedge.delay ms while there are too few of them.
+ */
+public class Mirrors {
+
+    private static final Logger logger = LogManager.getLogger(Mirrors.class);
+
+    private static final int MAX_PREFIXES = 1000;
+    private static final int SAMPLES = 50;
+    private static final int MIN_SAMPLES = 10;
+
+    // prefix -> prefixes serving the same files
+    private static final Map<String, List<String>> alternates = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_PREFIXES;
+        }
+    };
+    // host -> recent latencies
+    private static final Map<String, Latencies> latencies = new HashMap<>();
+
+    private Mirrors() {
+    }
+
+    /**
+     * Declares hosts that serve the same files under the same paths.
+     */
+    public static void addHostGroup(String... hosts) {
+        for (String host : hosts) {
+            for (String other : hosts) {
+                if (!host.equals(other)) {
+                    addAlternate("https://" + host + "/", "https://" + other + "/");
+                    addAlternate("http://" + host + "/", "https://" + other + "/");
+                }
+            }
+        }
+    }
+
+    /**
+     * Declares that URLs starting with prefix can also be fetched with alternatePrefix instead.
+     */
+    public static synchronized void addAlternate(String prefix, String alternatePrefix) {
+        List<String> known = alternates.computeIfAbsent(prefix, p -> new ArrayList<>());
+        if (!known.contains(alternatePrefix)) {
+            known.add(alternatePrefix);
+        }
+    }
+
+    public static synchronized boolean hasAlternates(URL url) {
+        String u = url.toExternalForm();
+        for (String prefix : alternates.keySet()) {
+            if (u.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return
+     *      The URL and its known mirrors, fastest first. Hosts without latencies yet keep
+     *      their order after the ones with, so the given URL comes first until a mirror
+     *      has proven faster.
+     */
+    public static List<URL> candidatesFor(URL url) {
+        List<URL> candidates = new ArrayList<>();
+        candidates.add(url);
+        String u = url.toExternalForm();
+        synchronized (Mirrors.class) {
+            for (Map.Entry<String, List<String>> entry : alternates.entrySet()) {
+                if (!u.startsWith(entry.getKey())) {
+                    continue;
+                }
+                for (String alternatePrefix : entry.getValue()) {
+                    try {
+                        URL alternate = new URL(alternatePrefix + u.substring(entry.getKey().length()));
+                        if (!candidates.contains(alternate)) {
+                            candidates.add(alternate);
+                        }
+                    } catch (MalformedURLException e) {
+                        logger.debug("Bad mirror {} for {}", alternatePrefix, url);
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Mirrors::expectedLatency));
+        return candidates;
+    }
+
+    /**
+     * @return
+     *      How long to wait for an answer from this URL's host before asking a mirror, in ms.
+     */
+    public static long hedgeDelay(URL url) {
+        long fallback = Utils.getConfigInteger("download.hedge.delay", 3000);
+        Latencies hostLatencies;
+        synchronized (Mirrors.class) {
+            hostLatencies = latencies.get(hostOf(url));
+        }
+        if (hostLatencies == null) {
+            return fallback;
+        }
+        int percentile = Math.min(100, Math.max(1, Utils.getConfigInteger("download.hedge.percentile", 95)));
+        long delay = hostLatencies.percentile(percentile);
+        return delay < 0 ? fallback : delay;
+    }
+
+    /**
+     * Records how long a host took to answer. Failed requests should be recorded with the
+     * time they were given, so an unreliable mirror sorts behind the others.
+     */
+    public static void recordLatency(URL url, long millis) {
+        Latencies hostLatencies;
+        synchronized (Mirrors.class) {
+            hostLatencies = latencies.computeIfAbsent(hostOf(url), h -> new Latencies());
+        }
+        hostLatencies.add(millis);
+    }
+
+    private static long expectedLatency(URL url) {
+        Latencies hostLatencies;
+        synchronized (Mirrors.class) {
+            hostLatencies = latencies.get(hostOf(url));
+        }
+        long median = hostLatencies == null ? -1 : hostLatencies.percentile(50);
+        return median < 0 ? Long.MAX_VALUE : median;
+    }
+
+    private static String hostOf(URL url) {
+        return url.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The last SAMPLES latencies of a host.
+     */
+    private static final class Latencies {
+        private final long[] samples = new long[SAMPLES];
+        private int count = 0;
+        private int next = 0;
+
+        private synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+        }
+
+        /**
+         * @return
+         *      The percentile of the recorded latencies, or -1 if there are too few of them.
+         */
+        private synchronized long percentile(int percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
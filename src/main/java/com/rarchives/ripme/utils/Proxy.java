@@ -1,7 +1,5 @@
 package com.rarchives.ripme.utils;
 
-import java.net.Authenticator;
-import java.net.PasswordAuthentication;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -19,7 +17,7 @@ public class Proxy {
      * @param fullproxy the string to parse
      * @return HashMap containing proxy server, port, user and password
      */
-    private static Map<String, String> parseServer(String fullproxy) {
+    static Map<String, String> parseServer(String fullproxy) {
         Map<String, String> proxy = new HashMap<String, String>();
 
         if (fullproxy.lastIndexOf("@") != -1) {
@@ -50,12 +48,7 @@ public class Proxy {
         Map<String, String> proxyServer = parseServer(fullproxy);
 
         if (proxyServer.get("user") != null && proxyServer.get("password") != null) {
-            Authenticator.setDefault(new Authenticator(){
-                protected PasswordAuthentication  getPasswordAuthentication(){
-                    PasswordAuthentication p = new PasswordAuthentication(proxyServer.get("user"), proxyServer.get("password").toCharArray());
-                    return p;
-                }
-            });
+            ProxyRouter.setProxyCredentials(proxyServer.get("user"), proxyServer.get("password"));
             System.setProperty("http.proxyUser", proxyServer.get("user"));
             System.setProperty("http.proxyPassword", proxyServer.get("password"));
             System.setProperty("https.proxyUser", proxyServer.get("user"));
@@ -80,12 +73,7 @@ public class Proxy {
 
         Map<String, String> socksServer = parseServer(fullsocks);
         if (socksServer.get("user") != null && socksServer.get("password") != null) {
-            Authenticator.setDefault(new Authenticator(){
-                protected PasswordAuthentication  getPasswordAuthentication(){
-                    PasswordAuthentication p = new PasswordAuthentication(socksServer.get("user"), socksServer.get("password").toCharArray());
-                    return p;
-                }
-            });
+            ProxyRouter.setProxyCredentials(socksServer.get("user"), socksServer.get("password"));
             System.setProperty("java.net.socks.username", socksServer.get("user"));
             System.setProperty("java.net.socks.password", socksServer.get("password"));
         }
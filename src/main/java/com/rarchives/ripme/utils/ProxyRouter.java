@@ -0,0 +1,390 @@
+package com.rarchives.ripme.utils;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Picks the proxy each request goes through, so requests to a rate-limited site can be
+ * spread over several egress points instead of the one JVM-wide proxy of {@link Proxy}.
+ * <p>
+ * Pools of proxies are listed in the config, comma separated, each as
+ * [http://|socks://][user:password@]host[:port]: proxy.pool for the default pool and
+ * proxy.pool.&lt;name&gt; for named ones. proxy.route.&lt;domain&gt; sends a domain and its
+ * subdomains through a named pool, or around every pool with "direct". Sites without a
+ * route use the default pool; without any pools nothing changes.
+ * <p>
+ * Within a pool requests go round-robin. Each proxy gets at most proxy.requests_per_second
+ * requests per second to each site (0 for no limit), and a proxy a site answered with 429
+ * rests for that site until its Retry-After. A proxy that fails proxy.failures times in a
+ * row (connection errors or 407) is taken out of rotation; it is checked every
+ * proxy.health.interval seconds and returns once it accepts connections again. When every
+ * proxy of a pool is out, requests go through the one that has been out the longest.
+ */
+public class ProxyRouter {
+
+    private static final Logger logger = LogManager.getLogger(ProxyRouter.class);
+    private static final String DIRECT = "direct";
+    private static final long DEFAULT_RATE_LIMIT_WAIT = TimeUnit.SECONDS.toMillis(60);
+
+    // pool name -> its proxies, "" being the default pool
+    private static final Map<String, List<Egress>> pools = new HashMap<>();
+    // pool name -> where the last round-robin pick was
+    private static final Map<String, Integer> nextInPool = new HashMap<>();
+    private static ScheduledExecutorService healthChecker = null;
+    // Credentials of the JVM-wide proxy of Proxy, for requests no pool entry answers
+    private static PasswordAuthentication proxyCredentials = null;
+    private static boolean authenticatorInstalled = false;
+
+    private ProxyRouter() {
+    }
+
+    /**
+     * Picks the proxy for a request to this URL, waiting until one of the pool has budget left.
+     * @return
+     *      The proxy to use, {@link java.net.Proxy#NO_PROXY} for a direct route, or null if
+     *      no pool applies and the JVM-wide proxy settings should be used.
+     */
+    public static java.net.Proxy select(URL url) throws IOException {
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        String poolName = routeOf(host);
+        if (DIRECT.equals(poolName)) {
+            return java.net.Proxy.NO_PROXY;
+        }
+        List<Egress> pool = getPool(poolName);
+        if (pool.isEmpty()) {
+            return null;
+        }
+        long interval = perSecondToInterval(Utils.getConfigInteger("proxy.requests_per_second", 0));
+        Egress chosen;
+        long wait;
+        synchronized (ProxyRouter.class) {
+            long now = System.currentTimeMillis();
+            int start = nextInPool.getOrDefault(poolName, 0);
+            chosen = null;
+            long soonest = Long.MAX_VALUE;
+            // First healthy proxy in round-robin order that may send right away,
+            // else the healthy one that may send soonest
+            for (int i = 0; i < pool.size(); i++) {
+                Egress egress = pool.get((start + i) % pool.size());
+                if (!egress.healthy) {
+                    continue;
+                }
+                long allowedAt = egress.allowedAt(host);
+                if (allowedAt <= now) {
+                    chosen = egress;
+                    break;
+                }
+                if (allowedAt < soonest) {
+                    soonest = allowedAt;
+                    chosen = egress;
+                }
+            }
+            if (chosen == null) {
+                // Everything is down, try the one that has been down the longest
+                for (Egress egress : pool) {
+                    if (chosen == null || egress.downSince < chosen.downSince) {
+                        chosen = egress;
+                    }
+                }
+            }
+            nextInPool.put(poolName, (pool.indexOf(chosen) + 1) % pool.size());
+            long sendAt = Math.max(now, chosen.allowedAt(host));
+            chosen.nextRequest.put(host, sendAt + interval);
+            wait = sendAt - now;
+        }
+        if (wait > 0) {
+            logger.debug("Waiting {}ms for {} to have budget for {}", wait, chosen, host);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a proxy", e);
+            }
+        }
+        return chosen.proxy;
+    }
+
+    /**
+     * @return
+     *      True if requests to this URL don't simply use the JVM-wide proxy settings:
+     *      they have a route, direct or through a pool, or the default pool has proxies.
+     */
+    public static boolean isRouted(URL url) {
+        String poolName = routeOf(url.getHost().toLowerCase(Locale.ROOT));
+        return DIRECT.equals(poolName) || !getPool(poolName).isEmpty();
+    }
+
+    /**
+     * Records what came of a request sent through a proxy picked by {@link #select(URL)}.
+     * @param proxy
+     *      The proxy, may be null or NO_PROXY, in which case nothing is recorded.
+     * @param statusCode
+     *      Status of the response.
+     * @param retryAfter
+     *      Its Retry-After header, or null.
+     */
+    public static void report(URL url, java.net.Proxy proxy, int statusCode, String retryAfter) {
+        if (statusCode == 407) {
+            failed(url, proxy);
+            return;
+        }
+        Egress egress = find(proxy);
+        if (egress == null) {
+            return;
+        }
+        synchronized (ProxyRouter.class) {
+            egress.failures = 0;
+            if (statusCode == 429) {
+                long wait = RetryPolicy.retryAfterMillis(retryAfter);
+                String host = url.getHost().toLowerCase(Locale.ROOT);
+                long until = System.currentTimeMillis() + (wait > 0 ? wait : DEFAULT_RATE_LIMIT_WAIT);
+                egress.nextRequest.put(host, Math.max(until, egress.allowedAt(host)));
+                logger.info("{} rate limited {}, resting it for {}ms",
+                        host, egress, until - System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Records that a request could not get through a proxy, so the next one can fail over
+     * to another proxy of the pool.
+     */
+    public static void failed(URL url, java.net.Proxy proxy) {
+        Egress egress = find(proxy);
+        if (egress == null) {
+            return;
+        }
+        synchronized (ProxyRouter.class) {
+            egress.failures++;
+            if (egress.healthy && egress.failures >= Math.max(1, Utils.getConfigInteger("proxy.failures", 3))) {
+                egress.healthy = false;
+                egress.downSince = System.currentTimeMillis();
+                logger.warn("[!] Taking proxy {} out of rotation after {} failures (last one loading {})",
+                        egress, egress.failures, url);
+                startHealthChecks();
+            }
+        }
+    }
+
+    private static Egress find(java.net.Proxy proxy) {
+        if (proxy == null || proxy.type() == java.net.Proxy.Type.DIRECT) {
+            return null;
+        }
+        synchronized (ProxyRouter.class) {
+            for (List<Egress> pool : pools.values()) {
+                for (Egress egress : pool) {
+                    if (egress.proxy.equals(proxy)) {
+                        return egress;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return
+     *      The pool the most specific routed domain of host goes through; "" for the default pool.
+     */
+    private static String routeOf(String host) {
+        String[] parts = host.split("\\.");
+        for (int i = 0; i < parts.length - 1; i++) {
+            String domain = String.join(".", Arrays.copyOfRange(parts, i, parts.length));
+            String route = Utils.getConfigString("proxy.route." + domain, null);
+            if (route != null && !route.trim().isEmpty()) {
+                return route.trim().toLowerCase(Locale.ROOT);
+            }
+        }
+        return "";
+    }
+
+    private static synchronized List<Egress> getPool(String name) {
+        List<Egress> pool = pools.get(name);
+        if (pool != null) {
+            return pool;
+        }
+        pool = new ArrayList<>();
+        String[] entries = Utils.getConfigStringArray(name.isEmpty() ? "proxy.pool" : "proxy.pool." + name);
+        if (entries != null) {
+            for (String entry : entries) {
+                if (entry.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    pool.add(Egress.parse(entry.trim()));
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    logger.warn("Ignoring proxy {} of pool {}: {}",
+                            entry, name.isEmpty() ? "default" : name, e.getMessage());
+                }
+            }
+            logger.info("Loaded {} proxies for pool {}", pool.size(), name.isEmpty() ? "default" : name);
+        } else if (!name.isEmpty()) {
+            logger.warn("No proxies in pool {} (proxy.pool.{})", name, name);
+        }
+        pools.put(name, pool);
+        installAuthenticator();
+        return pool;
+    }
+
+    /**
+     * Sets the credentials of the JVM-wide proxy of {@link Proxy}. They answer the
+     * authentication requests that no pool entry matches.
+     */
+    static synchronized void setProxyCredentials(String user, String password) {
+        proxyCredentials = new PasswordAuthentication(user, password.toCharArray());
+        installAuthenticator();
+    }
+
+    /**
+     * Installs the authenticator answering with the credentials of the pool entries, and of
+     * the JVM-wide proxy for anything else. There is only one default authenticator, so
+     * {@link Proxy} hands its credentials to this one instead of installing its own.
+     */
+    private static void installAuthenticator() {
+        if (authenticatorInstalled) {
+            return;
+        }
+        boolean needed = proxyCredentials != null
+                || pools.values().stream().flatMap(List::stream).anyMatch(e -> e.user != null);
+        if (!needed) {
+            return;
+        }
+        authenticatorInstalled = true;
+        Authenticator.setDefault(new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                synchronized (ProxyRouter.class) {
+                    for (List<Egress> pool : pools.values()) {
+                        for (Egress egress : pool) {
+                            // SOCKS proxies ask as a SERVER, HTTP proxies as a PROXY
+                            boolean proxyRequest = getRequestorType() == RequestorType.PROXY
+                                    || egress.proxy.type() == java.net.Proxy.Type.SOCKS;
+                            if (egress.user != null && proxyRequest
+                                    && egress.address.getHostString().equalsIgnoreCase(getRequestingHost())
+                                    && egress.address.getPort() == getRequestingPort()) {
+                                return new PasswordAuthentication(egress.user, egress.password.toCharArray());
+                            }
+                        }
+                    }
+                    return proxyCredentials;
+                }
+            }
+        });
+    }
+
+    private static void startHealthChecks() {
+        if (healthChecker != null) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "proxy-health");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, Utils.getConfigInteger("proxy.health.interval", 30));
+        healthChecker.scheduleWithFixedDelay(ProxyRouter::checkHealth, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static void checkHealth() {
+        List<Egress> down = new ArrayList<>();
+        synchronized (ProxyRouter.class) {
+            for (List<Egress> pool : pools.values()) {
+                for (Egress egress : pool) {
+                    if (!egress.healthy) {
+                        down.add(egress);
+                    }
+                }
+            }
+        }
+        for (Egress egress : down) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(egress.address.getHostString(), egress.address.getPort()), 5000);
+            } catch (IOException e) {
+                logger.debug("Proxy {} is still down: {}", egress, e.getMessage());
+                continue;
+            }
+            synchronized (ProxyRouter.class) {
+                egress.healthy = true;
+                egress.failures = 0;
+            }
+            logger.info("Proxy {} is back in rotation", egress);
+        }
+    }
+
+    private static long perSecondToInterval(int perSecond) {
+        return perSecond > 0 ? 1000 / perSecond : 0;
+    }
+
+    /**
+     * A proxy of a pool, with its health and when it may next send a request to each site.
+     */
+    private static final class Egress {
+        private final java.net.Proxy proxy;
+        private final InetSocketAddress address;
+        private final String user;
+        private final String password;
+        private final Map<String, Long> nextRequest = new HashMap<>();
+        private boolean healthy = true;
+        private int failures = 0;
+        private long downSince = 0;
+
+        private Egress(java.net.Proxy.Type type, String host, int port, String user, String password) {
+            this.address = InetSocketAddress.createUnresolved(host, port);
+            this.proxy = new java.net.Proxy(type, address);
+            this.user = user;
+            this.password = password;
+        }
+
+        /**
+         * @param entry
+         *      [http://|socks://][user:password@]host[:port]
+         */
+        private static Egress parse(String entry) {
+            java.net.Proxy.Type type = java.net.Proxy.Type.HTTP;
+            int defaultPort = 8080;
+            String lower = entry.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("socks://") || lower.startsWith("socks5://")) {
+                type = java.net.Proxy.Type.SOCKS;
+                defaultPort = 1080;
+            }
+            if (entry.contains("://")) {
+                entry = entry.substring(entry.indexOf("://") + 3);
+            }
+            Map<String, String> server = Proxy.parseServer(entry);
+            int port = defaultPort;
+            if (server.get("port") != null) {
+                try {
+                    port = Integer.parseInt(server.get("port"));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("bad port " + server.get("port"));
+                }
+            }
+            return new Egress(type, server.get("server"), port, server.get("user"), server.get("password"));
+        }
+
+        private long allowedAt(String host) {
+            return nextRequest.getOrDefault(host, 0L);
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+}
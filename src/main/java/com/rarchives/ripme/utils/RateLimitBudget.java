@@ -0,0 +1,101 @@
+package com.rarchives.ripme.utils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Request budgets that APIs announce in their responses (how many requests are left and
+ * when the window resets), shared by every rip in the process that calls the same API.
+ * <p>
+ * Requests go out right away while the budget lasts and are counted off it, so rips running
+ * side by side don't overdraw it between two responses. Once it is spent, requests wait
+ * until the window resets.
+ */
+public class RateLimitBudget {
+
+    private static final Logger logger = LogManager.getLogger(RateLimitBudget.class);
+
+    // Allowance for clocks that are not quite in sync with the API's
+    private static final long RESET_MARGIN = TimeUnit.SECONDS.toMillis(1);
+
+    private static final Map<String, Window> windows = new HashMap<>();
+
+    private RateLimitBudget() {
+    }
+
+    /**
+     * Waits until the budget of this API allows one more request, and counts it off.
+     * Requests to an API whose budget is not known yet go out right away.
+     */
+    public static void acquire(String api) throws IOException {
+        synchronized (windows) {
+            while (true) {
+                Window window = windows.get(api);
+                long now = System.currentTimeMillis();
+                if (window == null || window.reset + RESET_MARGIN <= now) {
+                    windows.remove(api);
+                    return;
+                }
+                if (window.remaining > 0) {
+                    window.remaining--;
+                    return;
+                }
+                long wait = window.reset + RESET_MARGIN - now;
+                logger.info("[!] {} requests used up, waiting {}s for the rate limit to reset",
+                        api, TimeUnit.MILLISECONDS.toSeconds(wait));
+                try {
+                    windows.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the " + api + " rate limit", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the budget a response announced.
+     * @param remaining
+     *      Requests left in the current window.
+     * @param reset
+     *      When the window resets, in ms since the epoch.
+     */
+    public static void update(String api, int remaining, long reset) {
+        synchronized (windows) {
+            Window window = windows.get(api);
+            if (window == null || reset > window.reset) {
+                windows.put(api, new Window(remaining, reset));
+            } else if (reset == window.reset) {
+                // Requests sent since this response was made are already counted off
+                window.remaining = Math.min(window.remaining, remaining);
+            }
+            windows.notifyAll();
+        }
+    }
+
+    /**
+     * @return
+     *      Requests left for this API, or -1 if its budget is not known.
+     */
+    public static int getRemaining(String api) {
+        synchronized (windows) {
+            Window window = windows.get(api);
+            return window == null || window.reset + RESET_MARGIN <= System.currentTimeMillis() ? -1 : window.remaining;
+        }
+    }
+
+    private static final class Window {
+        private int remaining;
+        private final long reset;
+
+        private Window(int remaining, long reset) {
+            this.remaining = remaining;
+            this.reset = reset;
+        }
+    }
+}
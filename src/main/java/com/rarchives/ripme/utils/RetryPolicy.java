@@ -0,0 +1,319 @@
+package com.rarchives.ripme.utils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * When and how long to wait before trying a request again, shared by {@link Http} and
+ * the download threads.
+ * <p>
+ * Only errors that can go away are retried: timeouts, dropped connections, 408, 429
+ * and 5xx. The wait doubles with every attempt from retry.backoff.base ms up to
+ * retry.backoff.max ms, with random jitter so threads don't retry in lockstep, or is
+ * what the server asked for in Retry-After.
+ * <p>
+ * Every host has a retry budget of retry.budget.max retries, refilled by
+ * retry.budget.ratio for every request that gets an answer, so a struggling host is not
+ * hit with a retry for every failure. After retry.circuit.failures failures in a row the
+ * host is paused (its circuit opens) for retry.circuit.cooldown seconds, doubling up to
+ * retry.circuit.max_cooldown seconds while it keeps failing. Requests to a paused host
+ * wait for it when the pause ends within retry.circuit.max_wait seconds and throw
+ * {@link HostPausedException} otherwise, so a dead host doesn't burn timeouts. Downloads
+ * wait out a longer pause like a retry, which spends the host's retry budget. When the
+ * pause ends, one request is let through to test the host before the others.
+ */
+public class RetryPolicy {
+
+    private static final Logger logger = LogManager.getLogger(RetryPolicy.class);
+
+    // A test request that hasn't reported back after this long is considered lost
+    private static final long PROBE_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    private static final Map<String, HostState> hosts = new HashMap<>();
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * @return
+     *      True if a response with this status code is worth asking for again.
+     */
+    public static boolean isRetryable(int statusCode) {
+        switch (statusCode) {
+            case 408: // Request Timeout
+            case 425: // Too Early
+            case 429: // Too Many Requests
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return
+     *      True if the request failed for a reason that can go away: a timeout or a lost connection.
+     */
+    public static boolean isRetryable(IOException e) {
+        if (e instanceof UnknownHostException || e instanceof HostPausedException) {
+            return false;
+        }
+        if (e instanceof SSLException) {
+            // Handshake and certificate errors won't fix themselves, a dropped connection may
+            return e.getMessage() != null && e.getMessage().contains("Connection reset");
+        }
+        return e instanceof SocketTimeoutException
+                || e instanceof ConnectException
+                || e instanceof NoRouteToHostException
+                || e instanceof SocketException
+                || e.getClass() == IOException.class;
+    }
+
+    /**
+     * Waits until requests to this URL's host are allowed, see the class description.
+     * @throws HostPausedException
+     *      If the host is paused for longer than retry.circuit.max_wait.
+     */
+    public static void acquire(URL url) throws IOException {
+        String host = hostOf(url);
+        long maxWait = TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("retry.circuit.max_wait", 60));
+        long deadline = System.currentTimeMillis() + maxWait;
+        synchronized (hosts) {
+            while (true) {
+                HostState state = stateFor(host);
+                long now = System.currentTimeMillis();
+                if (state.openUntil == 0) {
+                    return;
+                }
+                long wakeUp;
+                if (now < state.openUntil) {
+                    wakeUp = state.openUntil;
+                } else if (!state.probing || now - state.probeStarted > PROBE_TIMEOUT) {
+                    // Pause is over: this request tests the host
+                    state.probing = true;
+                    state.probeStarted = now;
+                    return;
+                } else {
+                    // Another request is testing the host
+                    wakeUp = now + 1000;
+                }
+                if (wakeUp > deadline) {
+                    throw new HostPausedException(host, state.openUntil - now);
+                }
+                try {
+                    hosts.wait(Math.max(1, wakeUp - now));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for " + host, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the host answered. Any answer counts, even a 404: the host is up.
+     */
+    public static void succeeded(URL url) {
+        synchronized (hosts) {
+            HostState state = stateFor(hostOf(url));
+            if (state.openUntil != 0) {
+                logger.info("Host {} is back, resuming requests", hostOf(url));
+            }
+            state.consecutiveFailures = 0;
+            state.openUntil = 0;
+            state.opens = 0;
+            state.probing = false;
+            double maxBudget = Utils.getConfigInteger("retry.budget.max", 10);
+            state.budget = Math.min(maxBudget, state.budget + getBudgetRatio());
+            hosts.notifyAll();
+        }
+    }
+
+    /**
+     * Records that a request to the host failed with a retryable error.
+     */
+    public static void failed(URL url) {
+        String host = hostOf(url);
+        synchronized (hosts) {
+            HostState state = stateFor(host);
+            state.consecutiveFailures++;
+            long now = System.currentTimeMillis();
+            boolean probeFailed = state.probing;
+            if (probeFailed || (state.openUntil == 0
+                    && state.consecutiveFailures >= Utils.getConfigInteger("retry.circuit.failures", 5))) {
+                state.opens++;
+                long cooldown = TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("retry.circuit.cooldown", 30));
+                long maxCooldown = TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("retry.circuit.max_cooldown", 600));
+                cooldown = Math.min(maxCooldown, cooldown << Math.min(state.opens - 1, 20));
+                state.openUntil = now + cooldown;
+                state.probing = false;
+                logger.warn("[!] {} failures in a row from {}, pausing requests to it for {}s",
+                        state.consecutiveFailures, host, cooldown / 1000);
+                hosts.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits before trying a request again.
+     * @param url
+     *      URL of the request.
+     * @param attempt
+     *      Number of the attempt that failed, starting at 1.
+     * @param retryAfter
+     *      The Retry-After header of the response, or null.
+     * @return
+     *      True if the request should be tried again, false if the host's retry budget
+     *      is spent or the thread was interrupted.
+     */
+    public static boolean backoff(URL url, int attempt, String retryAfter) {
+        return backoff(url, attempt, retryAfterMillis(retryAfter));
+    }
+
+    /**
+     * Like {@link #backoff(URL, int, String)}, waiting at least minDelay ms.
+     */
+    public static boolean backoff(URL url, int attempt, long minDelay) {
+        String host = hostOf(url);
+        synchronized (hosts) {
+            HostState state = stateFor(host);
+            if (state.budget < 1) {
+                logger.warn("[!] Retry budget for {} is spent, not retrying {}", host, url);
+                return false;
+            }
+            state.budget--;
+        }
+        long delay = Math.max(minDelay, getDelay(attempt));
+        logger.info("Retrying {} in {}ms (attempt {})", url, delay, attempt + 1);
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return
+     *      How long to wait after the given failed attempt: exponential, with jitter.
+     */
+    public static long getDelay(int attempt) {
+        long base = Utils.getConfigInteger("retry.backoff.base", 1000);
+        long max = Utils.getConfigInteger("retry.backoff.max", 30000);
+        long delay = Math.min(max, base << Math.min(Math.max(0, attempt - 1), 20));
+        // Somewhere between half and all of it
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * @param retryAfter
+     *      A Retry-After header: seconds, or an HTTP date.
+     * @return
+     *      How long the server asked to wait in ms, capped at retry.retry_after.max seconds;
+     *      0 if the header is missing or unreadable.
+     */
+    public static long retryAfterMillis(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        long max = TimeUnit.SECONDS.toMillis(Utils.getConfigInteger("retry.retry_after.max", 300));
+        long millis;
+        try {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            try {
+                millis = httpDate.parse(retryAfter.trim()).getTime() - System.currentTimeMillis();
+            } catch (ParseException pe) {
+                logger.debug("Unreadable Retry-After header: {}", retryAfter);
+                return 0;
+            }
+        }
+        return Math.max(0, Math.min(max, millis));
+    }
+
+    /**
+     * @return
+     *      True if requests to this URL's host are paused.
+     */
+    public static boolean isPaused(URL url) {
+        synchronized (hosts) {
+            HostState state = hosts.get(hostOf(url));
+            return state != null && state.openUntil != 0;
+        }
+    }
+
+    private static double getBudgetRatio() {
+        String ratio = Utils.getConfigString("retry.budget.ratio", "0.2");
+        try {
+            return Double.parseDouble(ratio);
+        } catch (NumberFormatException e) {
+            return 0.2;
+        }
+    }
+
+    private static HostState stateFor(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostState(Utils.getConfigInteger("retry.budget.max", 10)));
+    }
+
+    private static String hostOf(URL url) {
+        return url.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Thrown instead of making a request to a host that is paused for a while.
+     */
+    public static class HostPausedException extends IOException {
+        private final long remaining;
+
+        public HostPausedException(String host, long remaining) {
+            super("Requests to " + host + " are paused for " + Math.max(1, remaining / 1000)
+                    + "s after repeated failures");
+            this.remaining = remaining;
+        }
+
+        /**
+         * @return
+         *      How long the pause still lasts, in ms.
+         */
+        public long getRemaining() {
+            return remaining;
+        }
+    }
+
+    private static final class HostState {
+        private int consecutiveFailures = 0;
+        // 0 while requests are allowed, else when the pause ends
+        private long openUntil = 0;
+        // Pauses in a row without a success in between
+        private int opens = 0;
+        private boolean probing = false;
+        private long probeStarted = 0;
+        private double budget;
+
+        private HostState(double budget) {
+            this.budget = budget;
+        }
+    }
+}
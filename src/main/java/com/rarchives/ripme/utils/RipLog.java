@@ -0,0 +1,140 @@
+package com.rarchives.ripme.utils;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.FileAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.filter.ThreadContextMapFilter;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.util.KeyValuePair;
+
+/**
+ * Writes the log of each rip to log.txt in its working directory, next to ripme.log.
+ * <p>
+ * Threads working for a rip are tagged with its directory in the log4j ThreadContext,
+ * and each rip's file appender only takes events carrying its tag. The tag travels with
+ * the event, so this also holds with asynchronous loggers. Set log.per_rip (defaults to
+ * log.save) to turn it on or off.
+ */
+public class RipLog {
+
+    private static final Logger logger = LogManager.getLogger(RipLog.class);
+
+    public static final String KEY = "ripLog";
+    private static final String FILE_NAME = "log.txt";
+
+    // Appender name -> rips logging to it, rips into the same directory share one file
+    private static final Map<String, Integer> users = new HashMap<>();
+
+    private RipLog() {
+    }
+
+    public static boolean isEnabled() {
+        return Utils.getConfigBoolean("log.per_rip", Utils.getConfigBoolean("log.save", false));
+    }
+
+    /**
+     * Starts writing the events tagged with this directory to its log.txt. Every call must be
+     * followed by a call to {@link #stop(Path)}.
+     */
+    public static void start(Path workingDir) {
+        if (workingDir == null || !isEnabled()) {
+            return;
+        }
+        String name = appenderName(workingDir);
+        synchronized (users) {
+            Integer count = users.get(name);
+            if (count != null) {
+                users.put(name, count + 1);
+                return;
+            }
+            LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+            Configuration config = ctx.getConfiguration();
+            Filter onlyThisRip = ThreadContextMapFilter.createFilter(
+                    new KeyValuePair[]{new KeyValuePair(KEY, workingDir.toString())}, "and",
+                    Filter.Result.NEUTRAL, Filter.Result.DENY);
+            FileAppender appender = FileAppender.newBuilder()
+                    .setName(name)
+                    .withFileName(workingDir.resolve(FILE_NAME).toString())
+                    .withAppend(true)
+                    .setLayout(PatternLayout.newBuilder()
+                            .withPattern("%d{yyyy-MM-dd HH:mm:ss} %p %m%n")
+                            .withConfiguration(config)
+                            .build())
+                    .setFilter(onlyThisRip)
+                    .setConfiguration(config)
+                    .build();
+            if (appender == null) {
+                logger.warn("Unable to log to {}", workingDir.resolve(FILE_NAME));
+                return;
+            }
+            appender.start();
+            config.addAppender(appender);
+            config.getLoggerConfig(LogManager.ROOT_LOGGER_NAME).addAppender(appender, null, null);
+            ctx.updateLoggers();
+            users.put(name, 1);
+        }
+    }
+
+    /**
+     * Stops writing to the log.txt of this directory once no rip uses it anymore.
+     */
+    public static void stop(Path workingDir) {
+        if (workingDir == null) {
+            return;
+        }
+        String name = appenderName(workingDir);
+        synchronized (users) {
+            Integer count = users.get(name);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                users.put(name, count - 1);
+                return;
+            }
+            users.remove(name);
+            LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+            Configuration config = ctx.getConfiguration();
+            LoggerConfig root = config.getLoggerConfig(LogManager.ROOT_LOGGER_NAME);
+            root.removeAppender(name);
+            ctx.updateLoggers();
+            if (config.getAppender(name) != null) {
+                config.getAppender(name).stop();
+            }
+        }
+    }
+
+    /**
+     * Tags the events logged by the current thread from now on as belonging to the rip into this directory.
+     * @return
+     *      The tag the thread had before, to hand to {@link #restore(String)} when done.
+     */
+    public static String tag(Path workingDir) {
+        String previous = ThreadContext.get(KEY);
+        if (workingDir != null) {
+            ThreadContext.put(KEY, workingDir.toString());
+        }
+        return previous;
+    }
+
+    public static void restore(String previous) {
+        if (previous == null) {
+            ThreadContext.remove(KEY);
+        } else {
+            ThreadContext.put(KEY, previous);
+        }
+    }
+
+    private static String appenderName(Path workingDir) {
+        return "riplog-" + workingDir;
+    }
+}
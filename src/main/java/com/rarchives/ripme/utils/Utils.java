@@ -33,10 +33,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -169,6 +169,26 @@ public class Utils {
         config.setProperty(key, value);
     }
 
+    /**
+     * Removes a config key, so reading it gives the default again.
+     */
+    public static void clearConfig(String key) {
+        config.clearProperty(key);
+    }
+
+    /**
+     * @return
+     *      The config keys equal to prefix or starting with prefix followed by a dot.
+     */
+    public static List<String> getConfigKeys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        Iterator<?> it = config.getKeys(prefix);
+        while (it.hasNext()) {
+            keys.add(String.valueOf(it.next()));
+        }
+        return keys;
+    }
+
     public static void setConfigList(String key, List<Object> list) {
         config.clearProperty(key);
         config.addProperty(key, list);
@@ -202,7 +222,7 @@ public class Utils {
     /**
      * Determines if your current system is a Mac system
      */
-    private static boolean isMacOS() {
+    public static boolean isMacOS() {
         return OS.contains("mac");
     }
 
@@ -508,21 +528,18 @@ public class Utils {
             return path;
         }
 
-        String lastPart = path.substring(index + 1).toLowerCase(); // setting lowercase to check if it exists
+        String lastPart = path.substring(index + 1);
 
-        // Get a List of all Directories and check its lowercase
+        // Look the lowercase name up in the (cached) listing of the parent directory
         // if file exists return it
         File file = new File(path.substring(0, index));
         if (!(file.isDirectory() && file.canWrite() && file.canExecute())) {
             throw new IOException("Original directory \"" + file + "\" is no directory or not writeable.");
         }
-        ArrayList<String> names = new ArrayList<>(Arrays.asList(Objects.requireNonNull(file.list())));
-
-        for (String name : names) {
-            if (name.toLowerCase().equals(lastPart)) {
-                // Building Path of existing file
-                return path.substring(0, index) + "/" + name;
-            }
+        String name = DirectoryIndex.of(file.toPath()).findIgnoreCase(lastPart);
+        if (name != null) {
+            // Building Path of existing file
+            return path.substring(0, index) + "/" + name;
         }
 
         // otherwise return original path
@@ -848,7 +865,7 @@ public class Utils {
 
     // Checks if a file exists ignoring it's extension.
     public static boolean fuzzyExists(Path folder, String filename) {
-        return Files.exists(folder.resolve(filename));
+        return DirectoryIndex.of(folder).containsIgnoringExtension(filename);
     }
 
     public static String sanitizeSaveAs(String fileNameToSan) {
@@ -0,0 +1,567 @@
+package com.rarchives.ripme.ripper;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.rarchives.ripme.ui.RipStatusMessage.STATUS;
+import com.rarchives.ripme.utils.CookieStore;
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.HostConcurrency;
+import com.rarchives.ripme.utils.RetryPolicy;
+import com.rarchives.ripme.utils.RipLog;
+import com.rarchives.ripme.utils.Utils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Non-blocking download engine, keeping many transfers in flight on a handful of threads.
+ * <p>
+ * This is the java 21 version from META-INF/versions/21 of the multi-release jar.
+ * Requests go through one shared {@link HttpClient}, which multiplexes all connections
+ * on download.async.threads selector/worker threads, and response bodies are streamed
+ * into an {@link AsynchronousFileChannel}. No thread is held while waiting on a server.
+ * <p>
+ * Like {@link DownloadFileThread}, every try waits for its host in {@link RetryPolicy}
+ * and {@link HostConcurrency} and reports back to them, sends the cookies of the
+ * {@link CookieStore} and keeps the ones the server sets, backs off before retrying and
+ * records a {@link RipEvents} download event. Those waits run on virtual threads.
+ * <p>
+ * At most download.async.max_in_flight transfers run per ripper; further calls to
+ * {@link #download} block the caller until one finishes. A transfer fails once the
+ * server sends nothing for download.timeout, while waiting for the headers as well as
+ * between two chunks of the body.
+ */
+final class AsyncDownloadEngine {
+
+    private static final Logger logger = LogManager.getLogger(AsyncDownloadEngine.class);
+    private static volatile HttpClient client = null;
+    // Fails transfers whose body stalls, HttpRequest.timeout() only covers the headers
+    private static final ScheduledExecutorService idleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "async-download-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+    // Waits for paused or busy hosts and sleeps through retry backoffs
+    private static final ExecutorService waiter = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("async-download-wait-", 0).factory());
+
+    private final AbstractRipper observer;
+    private final Semaphore inFlight;
+    private final Phaser pending = new Phaser(1);
+    private final int retries;
+    private final Duration timeout;
+
+    AsyncDownloadEngine(AbstractRipper observer) {
+        this.observer = observer;
+        this.inFlight = new Semaphore(Math.max(1, Utils.getConfigInteger("download.async.max_in_flight", 256)));
+        this.retries = Utils.getConfigInteger("download.retries", 1);
+        this.timeout = Duration.ofMillis(Utils.getConfigInteger("download.timeout", 60000));
+    }
+
+    static boolean isAvailable() {
+        return true;
+    }
+
+    private static HttpClient client() {
+        if (client == null) {
+            synchronized (AsyncDownloadEngine.class) {
+                if (client == null) {
+                    int threads = Math.max(1, Utils.getConfigInteger("download.async.threads", 4));
+                    client = HttpClient.newBuilder()
+                            .executor(Executors.newFixedThreadPool(threads, r -> {
+                                Thread t = new Thread(r, "async-download");
+                                t.setDaemon(true);
+                                return t;
+                            }))
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .proxy(ProxySelector.getDefault())
+                            .connectTimeout(Duration.ofMillis(Utils.getConfigInteger("download.timeout", 60000)))
+                            .build();
+                }
+            }
+        }
+        return client;
+    }
+
+    boolean download(URL url, Path saveAs, String referrer, Map<String, String> cookies) {
+        URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            // HttpURLConnection is more lenient about unencoded characters
+            return false;
+        }
+        // Same file name rules as DownloadFileThread
+        saveAs = Paths.get(
+                saveAs.getParent().toAbsolutePath() + "/" + Utils.sanitizeSaveAs(saveAs.getFileName().toString()));
+        if (observer.isStopped()) {
+            observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
+            return true;
+        }
+        if (DirectoryIndex.exists(saveAs)) {
+            if (Utils.getConfigBoolean("file.overwrite", false)) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("[!] {}{}", Utils.getLocalizedString("deleting.existing.file"), Utils.removeCWD(saveAs));
+                }
+                try {
+                    Files.delete(saveAs);
+                    DirectoryIndex.fileRemoved(saveAs);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            } else {
+                if (logger.isInfoEnabled()) {
+                    logger.info("[!] {} {} -- {}: {}", Utils.getLocalizedString("skipping"), url,
+                            Utils.getLocalizedString("file.already.exists"), Utils.removeCWD(saveAs));
+                }
+                observer.downloadExists(url, saveAs);
+                return true;
+            }
+        }
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
+            return true;
+        }
+        pending.register();
+        Transfer transfer = new Transfer(url, uri, saveAs, referrer, cookies);
+        later(() -> start(transfer, 1));
+        return true;
+    }
+
+    void awaitCompletion() {
+        int phase = pending.arrive();
+        try {
+            pending.awaitAdvanceInterruptibly(phase, 3600, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.error("[!] Interrupted while waiting for downloads to finish: ", e);
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            logger.error("[!] Timed out waiting for downloads to finish");
+        }
+    }
+
+    /**
+     * Runs a step of a transfer that may block on a virtual thread, logging to the rip's log.
+     */
+    private void later(Runnable step) {
+        waiter.execute(() -> {
+            String previousLog = RipLog.tag(observer.getWorkingDir());
+            try {
+                step.run();
+            } finally {
+                RipLog.restore(previousLog);
+            }
+        });
+    }
+
+    /**
+     * Waits until the host takes one more request, then sends it. Runs on a virtual thread.
+     */
+    private void start(Transfer transfer, int number) {
+        URL url = transfer.url;
+        if (observer.isStopped()) {
+            observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
+            done();
+            return;
+        }
+        logger.info("    Downloading file: {}{}", url, number > 1 ? " Retry #" + number : "");
+        observer.sendUpdate(STATUS.DOWNLOAD_STARTED, url.toExternalForm());
+        Attempt attempt = new Attempt(transfer, number, RipEvents.download(observer, url));
+        HttpRequest request;
+        try {
+            request = request(transfer);
+            RetryPolicy.acquire(url);
+            HostConcurrency.acquire(url);
+        } catch (RetryPolicy.HostPausedException e) {
+            attempt.event.end();
+            logger.warn("[!] {}, waiting to download {}", e.getMessage(), url);
+            // Waiting for a paused host isn't a try, only the retry budget limits it
+            retry(transfer, number - 1, e.getRemaining());
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            attempt.event.end();
+            logger.error("[!] {} {}: {}", Utils.getLocalizedString("failed.to.download"), url, e.getMessage());
+            observer.downloadErrored(url, Utils.getLocalizedString("failed.to.download") + " " + url.toExternalForm());
+            done();
+            return;
+        }
+        attempt.requested = System.currentTimeMillis();
+        client().sendAsync(request, info -> bodyFor(info, attempt))
+                .whenComplete((response, error) -> {
+                    attempt.event.end();
+                    HostConcurrency.release(url);
+                    // Runs on the client's threads, which don't know which rip they work for
+                    String previousLog = RipLog.tag(observer.getWorkingDir());
+                    try {
+                        finished(attempt, response, error);
+                    } finally {
+                        RipLog.restore(previousLog);
+                    }
+                });
+    }
+
+    private HttpRequest request(Transfer transfer) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(transfer.uri)
+                .GET()
+                .timeout(timeout)
+                .header("accept", "*/*")
+                .header("User-agent", AbstractRipper.USER_AGENT);
+        if (transfer.referrer != null && !transfer.referrer.equals("")) {
+            request.header("Referer", transfer.referrer);
+        }
+        // Cookies given by the ripper win over the stored ones
+        Map<String, String> cookies = CookieStore.cookiesFor(transfer.url);
+        if (transfer.cookies != null) {
+            cookies.putAll(transfer.cookies);
+        }
+        if (!cookies.isEmpty()) {
+            StringBuilder cookie = new StringBuilder();
+            for (Map.Entry<String, String> entry : cookies.entrySet()) {
+                if (cookie.length() > 0) {
+                    cookie.append("; ");
+                }
+                cookie.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            request.header("Cookie", cookie.toString());
+        }
+        return request.build();
+    }
+
+    private HttpResponse.BodySubscriber<Path> bodyFor(HttpResponse.ResponseInfo info, Attempt attempt) {
+        attempt.latency = System.currentTimeMillis() - attempt.requested;
+        attempt.answered = true;
+        attempt.event.answered(info.statusCode());
+        if (info.statusCode() / 100 != 2) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        if (info.headers().firstValueAsLong("Content-Length").orElse(-1) == 503
+                && attempt.transfer.url.getHost().endsWith("imgur.com")) {
+            // Imgur image with 503 bytes is "404"
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return new FileSubscriber(attempt);
+    }
+
+    private void finished(Attempt attempt, HttpResponse<Path> response, Throwable error) {
+        Transfer transfer = attempt.transfer;
+        URL url = transfer.url;
+        String retryAfter = null;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (observer.isStopped()) {
+                observer.downloadErrored(url, Utils.getLocalizedString("download.interrupted"));
+                done();
+                return;
+            }
+            logger.error("[!] {}: {} - {}", Utils.getLocalizedString("exception.while.downloading.file"), url,
+                    cause.getMessage());
+            if (cause instanceof HttpTimeoutException) {
+                RetryPolicy.failed(url);
+                HostConcurrency.congested(url);
+            } else if (!attempt.answered && cause instanceof IOException && RetryPolicy.isRetryable((IOException) cause)) {
+                RetryPolicy.failed(url);
+            }
+        } else {
+            int statusCode = response.statusCode();
+            CookieStore.capture(responseURL(response, url), response.headers().allValues("Set-Cookie"));
+            if (RetryPolicy.isRetryable(statusCode)) {
+                RetryPolicy.failed(url);
+                if (statusCode == 429 || statusCode == 503 || statusCode == 504) {
+                    HostConcurrency.congested(url);
+                }
+                retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+                logger.error("[!] {} {} while downloading from {}", Utils.getLocalizedString("retriable.status.code"),
+                        statusCode, url);
+            } else {
+                RetryPolicy.succeeded(url);
+                if (statusCode / 100 == 2 && response.body() != null) {
+                    HostConcurrency.succeeded(url, attempt.transferred, attempt.latency);
+                    DirectoryIndex.fileAdded(transfer.saveAs);
+                    observer.downloadCompleted(url, transfer.saveAs);
+                    if (logger.isInfoEnabled()) {
+                        logger.info("[+] Saved {} as {}", url, Utils.removeCWD(transfer.saveAs));
+                    }
+                    done();
+                    return;
+                } else if (statusCode / 100 == 2) {
+                    logger.error("[!] Imgur image is 404 (503 bytes long): {}", url);
+                    observer.downloadErrored(url, "Imgur image is 404: " + url.toExternalForm());
+                    done();
+                    return;
+                } else if (statusCode / 100 == 5) {
+                    logger.error("[!] {} {} while downloading from {}", Utils.getLocalizedString("retriable.status.code"),
+                            statusCode, url);
+                } else {
+                    logger.error("[!] {} {} while downloading from {}", Utils.getLocalizedString("nonretriable.status.code"),
+                            statusCode, url);
+                    observer.downloadErrored(url, Utils.getLocalizedString("nonretriable.status.code") + " "
+                            + statusCode + " while downloading " + url.toExternalForm());
+                    done();
+                    return;
+                }
+            }
+        }
+
+        if (attempt.number > retries) {
+            logger.error("[!] {} ({}) for URL {}", Utils.getLocalizedString("exceeded.maximum.retries"), retries, url);
+            observer.downloadErrored(url, Utils.getLocalizedString("failed.to.download") + " " + url.toExternalForm());
+            done();
+            return;
+        }
+        retry(transfer, attempt.number, RetryPolicy.retryAfterMillis(retryAfter));
+    }
+
+    /**
+     * Backs off like {@link DownloadFileThread} does, then tries again, unless the host's retry budget is spent.
+     * @param failed
+     *      Number of the try that failed.
+     */
+    private void retry(Transfer transfer, int failed, long minDelay) {
+        later(() -> {
+            if (!RetryPolicy.backoff(transfer.url, failed, minDelay)) {
+                observer.downloadErrored(transfer.url,
+                        Utils.getLocalizedString("failed.to.download") + " " + transfer.url.toExternalForm());
+                done();
+                return;
+            }
+            start(transfer, failed + 1);
+        });
+    }
+
+    /**
+     * @return
+     *      The URL the response came from after redirects, for its cookies.
+     */
+    private static URL responseURL(HttpResponse<?> response, URL requested) {
+        try {
+            return response.uri().toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            return requested;
+        }
+    }
+
+    private void done() {
+        inFlight.release();
+        pending.arriveAndDeregister();
+    }
+
+    private static final class Transfer {
+        private final URL url;
+        private final URI uri;
+        private final Path saveAs;
+        private final String referrer;
+        private final Map<String, String> cookies;
+
+        private Transfer(URL url, URI uri, Path saveAs, String referrer, Map<String, String> cookies) {
+            this.url = url;
+            this.uri = uri;
+            this.saveAs = saveAs;
+            this.referrer = referrer;
+            this.cookies = cookies;
+        }
+    }
+
+    /**
+     * One try at a transfer.
+     */
+    private static final class Attempt {
+        private final Transfer transfer;
+        private final int number;
+        private final RipEvents.Download event;
+        private volatile long requested;
+        // Set once the response headers came in, errors after that don't count against the host
+        private volatile boolean answered = false;
+        private volatile long latency = 0;
+        // Bytes on disk so far, written by one completion handler at a time
+        private volatile long transferred = 0;
+
+        private Attempt(Transfer transfer, int number, RipEvents.Download event) {
+            this.transfer = transfer;
+            this.number = number;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Writes the response body to a file, asking for the next chunk only once
+     * the previous one is on disk.
+     */
+    private final class FileSubscriber implements HttpResponse.BodySubscriber<Path> {
+        private final Attempt attempt;
+        private final Path file;
+        private final CompletableFuture<Path> result = new CompletableFuture<>();
+        private AsynchronousFileChannel channel;
+        private Flow.Subscription subscription;
+        private boolean writing = false;
+        private boolean upstreamDone = false;
+        private ScheduledFuture<?> idle;
+
+        private FileSubscriber(Attempt attempt) {
+            this.attempt = attempt;
+            this.file = attempt.transfer.saveAs;
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            try {
+                channel = AsynchronousFileChannel.open(file,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            this.subscription = subscription;
+            requestNext();
+        }
+
+        /**
+         * Asks for the next chunk, giving the server download.timeout to send it.
+         */
+        private void requestNext() {
+            synchronized (this) {
+                idle = idleTimer.schedule(this::stalled, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            subscription.request(1);
+        }
+
+        private synchronized void stopWaiting() {
+            if (idle != null) {
+                idle.cancel(false);
+                idle = null;
+            }
+        }
+
+        private void stalled() {
+            subscription.cancel();
+            fail(new HttpTimeoutException("No data received for " + timeout.toMillis() + "ms"));
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            stopWaiting();
+            if (result.isDone()) {
+                return;
+            }
+            if (observer.isStopped()) {
+                subscription.cancel();
+                fail(new IOException("Ripping interrupted"));
+                return;
+            }
+            synchronized (this) {
+                writing = true;
+            }
+            write(buffers.toArray(new ByteBuffer[0]), 0);
+        }
+
+        private void write(ByteBuffer[] buffers, int index) {
+            while (index < buffers.length && !buffers[index].hasRemaining()) {
+                index++;
+            }
+            if (index == buffers.length) {
+                synchronized (this) {
+                    writing = false;
+                    if (!upstreamDone) {
+                        requestNext();
+                        return;
+                    }
+                }
+                finish();
+                return;
+            }
+            int next = index;
+            attempt.event.writing();
+            channel.write(buffers[next], attempt.transferred, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer written, Void attachment) {
+                    attempt.event.written(written);
+                    attempt.transferred += written;
+                    write(buffers, next);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    subscription.cancel();
+                    fail(exc);
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            stopWaiting();
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            stopWaiting();
+            synchronized (this) {
+                upstreamDone = true;
+                if (writing) {
+                    return;
+                }
+            }
+            finish();
+        }
+
+        private void finish() {
+            try {
+                channel.close();
+                result.complete(file);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable error) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                }
+            }
+            result.completeExceptionally(error);
+        }
+    }
+}
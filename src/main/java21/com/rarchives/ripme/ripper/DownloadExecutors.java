@@ -0,0 +1,102 @@
+package com.rarchives.ripme.ripper;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.rarchives.ripme.utils.Utils;
+
+/**
+ * Creates the executors behind {@link DownloadThreadPool}.
+ * <p>
+ * This is the java 21 version from META-INF/versions/21 of the multi-release jar.
+ * Every task gets its own virtual thread, and a semaphore caps how many of them
+ * run at once. A task waiting for a permit, or for a slow server, only costs a
+ * parked virtual thread instead of a platform thread.
+ * <p>
+ * Set threads.virtual = false to get the java 8 fixed pool back, and
+ * threads.virtual.size (main pool) or threads.virtual.size.&lt;pool&gt; to change
+ * how many tasks of a pool run at once.
+ */
+final class DownloadExecutors {
+
+    private DownloadExecutors() {
+    }
+
+    static ExecutorService newExecutor(String threadPoolName, int threads) {
+        if (!usesVirtualThreads()) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        // threads.virtual.size only sizes the main download pool, ripper pools use threads.virtual.size.<pool>
+        int permits = Utils.getConfigInteger("threads.virtual.size." + threadPoolName,
+                "Main".equals(threadPoolName) ? Utils.getConfigInteger("threads.virtual.size", threads) : threads);
+        return new LimitedExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadPoolName + "-", 0).factory()),
+                new Semaphore(Math.max(1, permits)));
+    }
+
+    static boolean usesVirtualThreads() {
+        return Utils.getConfigBoolean("threads.virtual", true);
+    }
+
+    /**
+     * Runs tasks on the delegate, but never more than the semaphore allows at once.
+     * Permits are taken on the virtual thread itself, so execute() never blocks.
+     */
+    private static final class LimitedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        LimitedExecutor(ExecutorService delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // Dropping it would keep its queue slot and pending item forever; run it without a permit
+                    task.run();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
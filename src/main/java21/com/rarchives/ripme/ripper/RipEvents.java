@@ -0,0 +1,311 @@
+package com.rarchives.ripme.ripper;
+
+import java.net.URL;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events for where the time of a rip goes: page fetches, page parsing,
+ * URL history lookups, waits for a download slot and the phases of each download.
+ * <p>
+ * This is the java 21 version from META-INF/versions/21 of the multi-release jar. The
+ * events are in the RipMe category and only cost something while a recording has them
+ * enabled, for example with -XX:StartFlightRecording or jcmd JFR.start.
+ */
+final class RipEvents {
+
+    private static final Span NO_SPAN = new Span(null);
+    private static final Download NO_DOWNLOAD = new Download(null);
+
+    private RipEvents() {
+    }
+
+    static Span pageFetch(AbstractRipper ripper, URL page) {
+        return start(new PageFetchEvent(), ripper, page);
+    }
+
+    static Span pageParse(AbstractRipper ripper, URL page) {
+        return start(new PageParseEvent(), ripper, page);
+    }
+
+    static Span historyLookup(AbstractRipper ripper, String url) {
+        HistoryLookupEvent event = new HistoryLookupEvent();
+        if (!event.isEnabled()) {
+            return NO_SPAN;
+        }
+        event.ripper = nameOf(ripper);
+        event.url = url;
+        return new Span(event);
+    }
+
+    static Span queueWait(String pool, Runnable task) {
+        QueueWaitEvent event = new QueueWaitEvent();
+        if (!event.isEnabled()) {
+            return NO_SPAN;
+        }
+        event.pool = pool;
+        URL url = null;
+        if (task instanceof DownloadFileThread) {
+            url = ((DownloadFileThread) task).getURL();
+            event.ripper = nameOf(((DownloadFileThread) task).getRipper());
+        } else if (task instanceof DownloadVideoThread) {
+            url = ((DownloadVideoThread) task).getURL();
+            event.ripper = nameOf(((DownloadVideoThread) task).getRipper());
+        }
+        if (url != null) {
+            event.host = url.getHost();
+            event.url = url.toExternalForm();
+        }
+        return new Span(event);
+    }
+
+    static Download download(AbstractRipper ripper, URL url) {
+        DownloadEvent event = new DownloadEvent();
+        if (!event.isEnabled()) {
+            return NO_DOWNLOAD;
+        }
+        event.ripper = nameOf(ripper);
+        event.host = url.getHost();
+        event.url = url.toExternalForm();
+        return new Download(event);
+    }
+
+    private static Span start(RipEvent event, AbstractRipper ripper, URL url) {
+        if (!event.isEnabled()) {
+            return NO_SPAN;
+        }
+        event.ripper = nameOf(ripper);
+        event.setURL(url);
+        return new Span(event);
+    }
+
+    private static String nameOf(AbstractRipper ripper) {
+        return ripper == null ? null : ripper.getClass().getSimpleName();
+    }
+
+    static class Span {
+        private final RipEvent event;
+        private long started;
+        private long pausedAt;
+        private long paused;
+
+        Span(RipEvent event) {
+            this.event = event;
+            if (event != null) {
+                event.begin();
+                started = System.nanoTime();
+            }
+        }
+
+        void setURL(URL url) {
+            if (event != null) {
+                event.setURL(url);
+            }
+        }
+
+        void pause() {
+            if (event != null) {
+                pausedAt = System.nanoTime();
+            }
+        }
+
+        void resume() {
+            if (event != null) {
+                paused += System.nanoTime() - pausedAt;
+            }
+        }
+
+        void end() {
+            end(0);
+        }
+
+        void end(long count) {
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.count(count);
+                event.active(System.nanoTime() - started - paused);
+                event.commit();
+            }
+        }
+    }
+
+    static class Download {
+        private final DownloadEvent event;
+        private long started;
+        private long connectedAt;
+        private long answeredAt;
+        private long writeStart;
+
+        Download(DownloadEvent event) {
+            this.event = event;
+            if (event != null) {
+                event.begin();
+                started = System.nanoTime();
+            }
+        }
+
+        void connected() {
+            if (event != null) {
+                connectedAt = System.nanoTime();
+                event.connect = connectedAt - started;
+            }
+        }
+
+        void answered(int status) {
+            if (event != null) {
+                answeredAt = System.nanoTime();
+                event.status = status;
+                event.firstByte = answeredAt - (connectedAt == 0 ? started : connectedAt);
+            }
+        }
+
+        void writing() {
+            if (event != null) {
+                writeStart = System.nanoTime();
+            }
+        }
+
+        void written(int bytes) {
+            if (event != null) {
+                event.write += System.nanoTime() - writeStart;
+                event.bytes += bytes;
+            }
+        }
+
+        void end() {
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                if (answeredAt != 0) {
+                    event.transfer = System.nanoTime() - answeredAt;
+                }
+                event.commit();
+            }
+        }
+    }
+
+    @Category("RipMe")
+    @StackTrace(false)
+    abstract static class RipEvent extends Event {
+        @Label("Host")
+        String host;
+
+        @Label("Ripper")
+        String ripper;
+
+        @Label("URL")
+        String url;
+
+        void setURL(URL url) {
+            if (url != null) {
+                host = url.getHost();
+                this.url = url.toExternalForm();
+            }
+        }
+
+        /**
+         * Sets what the event counts, if anything.
+         */
+        void count(long count) {
+        }
+
+        /**
+         * Sets how long the span ran without being paused, if the event records it.
+         */
+        void active(long nanos) {
+        }
+    }
+
+    @Name("com.rarchives.ripme.PageFetch")
+    @Label("Page Fetch")
+    @Description("Loading a page of a rip")
+    static class PageFetchEvent extends RipEvent {
+    }
+
+    @Name("com.rarchives.ripme.PageParse")
+    @Label("Page Parse")
+    @Description("Finding the items of a page, queueing them included")
+    static class PageParseEvent extends RipEvent {
+        @Label("Items")
+        long items;
+
+        @Label("Parsing")
+        @Description("Time spent on the page itself, without queueing the items found")
+        @Timespan
+        long parsing;
+
+        @Override
+        void count(long count) {
+            items = count;
+        }
+
+        @Override
+        void active(long nanos) {
+            parsing = nanos;
+        }
+    }
+
+    @Name("com.rarchives.ripme.HistoryLookup")
+    @Label("History Lookup")
+    @Description("Looking a URL up in the download history")
+    static class HistoryLookupEvent extends RipEvent {
+        @Label("Found")
+        boolean found;
+
+        @Override
+        void count(long count) {
+            found = count > 0;
+        }
+    }
+
+    @Name("com.rarchives.ripme.QueueWait")
+    @Label("Download Queue Wait")
+    @Description("A download waiting for room in the queue of its pool and for a thread to run it")
+    static class QueueWaitEvent extends RipEvent {
+        @Label("Pool")
+        String pool;
+    }
+
+    @Name("com.rarchives.ripme.Download")
+    @Label("Download")
+    @Description("One try at downloading a file")
+    static class DownloadEvent extends RipEvent {
+        @Label("Status")
+        int status;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Connect")
+        @Timespan
+        long connect;
+
+        @Label("First Byte")
+        @Description("From the connection being up until the response headers came in")
+        @Timespan
+        long firstByte;
+
+        @Label("Transfer")
+        @Description("From the response headers until the end of the download, writes included")
+        @Timespan
+        long transfer;
+
+        @Label("Write")
+        @Description("Time spent writing to disk")
+        @Timespan
+        long write;
+    }
+}
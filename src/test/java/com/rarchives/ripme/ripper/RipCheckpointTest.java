@@ -0,0 +1,85 @@
+package com.rarchives.ripme.ripper;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RipCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSaveAndLoad() throws MalformedURLException {
+        URL album = new URL("https://checkpoint.test/album/1");
+        Map<URL, Path> pending = new LinkedHashMap<>();
+        pending.put(new URL("https://checkpoint.test/img/41.jpg"), dir.resolve("041_41.jpg"));
+
+        RipCheckpoint checkpoint = RipCheckpoint.start(dir, album);
+        checkpoint.startPage("https://checkpoint.test/album/1?page=3", 40, pending);
+
+        RipCheckpoint loaded = RipCheckpoint.load(dir, album);
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals("https://checkpoint.test/album/1?page=3", loaded.getPage());
+        Assertions.assertNull(loaded.getJSONPage());
+        Assertions.assertEquals(40, loaded.getIndex());
+        Assertions.assertEquals(pending, loaded.getPending());
+
+        // Only the rip of the same URL resumes from it
+        Assertions.assertNull(RipCheckpoint.load(dir, new URL("https://checkpoint.test/album/2")));
+    }
+
+    @Test
+    public void testJSONPage() throws MalformedURLException {
+        URL album = new URL("https://checkpoint.test/api/album");
+        JSONObject page = new JSONObject().put("next", "abc").put("items", 20);
+
+        RipCheckpoint.start(dir, album).startPage(page, 20, Collections.emptyMap());
+
+        RipCheckpoint loaded = RipCheckpoint.load(dir, album);
+        Assertions.assertNotNull(loaded);
+        Assertions.assertNull(loaded.getPage());
+        Assertions.assertEquals("abc", loaded.getJSONPage().getString("next"));
+        Assertions.assertEquals(20, loaded.getIndex());
+        Assertions.assertTrue(loaded.getPending().isEmpty());
+    }
+
+    @Test
+    public void testResume() throws MalformedURLException {
+        URL album = new URL("https://checkpoint.test/album/3");
+        RipCheckpoint.start(dir, album).startPage("https://checkpoint.test/album/3?page=2", 10, Collections.emptyMap());
+
+        RipCheckpoint resumed = RipCheckpoint.load(dir, album);
+        Assertions.assertTrue(resumed.isOnResumedPage());
+        resumed.startPage("https://checkpoint.test/album/3?page=2", 10, Collections.emptyMap());
+        Assertions.assertTrue(resumed.isOnResumedPage());
+        resumed.startPage("https://checkpoint.test/album/3?page=3", 30, Collections.emptyMap());
+        Assertions.assertFalse(resumed.isOnResumedPage());
+
+        // A new rip is never on a resumed page
+        Assertions.assertFalse(RipCheckpoint.start(dir, album).isOnResumedPage());
+    }
+
+    @Test
+    public void testDelete() throws MalformedURLException {
+        URL album = new URL("https://checkpoint.test/album/4");
+        Map<URL, Path> pending = new LinkedHashMap<>();
+        RipCheckpoint checkpoint = RipCheckpoint.start(dir, album);
+        checkpoint.startPage("https://checkpoint.test/album/4", 0, pending);
+        checkpoint.delete();
+        Assertions.assertNull(RipCheckpoint.load(dir, album));
+
+        // A download finishing after the rip completed doesn't bring it back
+        pending.put(new URL("https://checkpoint.test/img/1.jpg"), dir.resolve("001_1.jpg"));
+        checkpoint.save(pending);
+        Assertions.assertNull(RipCheckpoint.load(dir, album));
+    }
+}
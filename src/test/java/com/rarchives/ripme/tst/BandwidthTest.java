@@ -0,0 +1,80 @@
+package com.rarchives.ripme.tst;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.rarchives.ripme.utils.Bandwidth;
+import com.rarchives.ripme.utils.Utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BandwidthTest {
+
+    private static final String[] KEYS = {
+            "bandwidth.limit", "bandwidth.limit.capped.bandwidth.test", "bandwidth.limit.pace.bandwidth.test"};
+
+    private final Map<String, String> previous = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (String key : KEYS) {
+            previous.put(key, Utils.getConfigString(key, null));
+        }
+        // a limit in the user's config would change the numbers
+        Utils.setConfigInteger("bandwidth.limit", 0);
+        Bandwidth.refresh();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (String key : KEYS) {
+            if (previous.get(key) == null) {
+                Utils.clearConfig(key);
+            } else {
+                Utils.setConfigString(key, previous.get(key));
+            }
+        }
+        Bandwidth.refresh();
+    }
+
+    @Test
+    public void testDomainLimit() throws MalformedURLException {
+        URL capped = new URL("https://cdn.capped.bandwidth.test/1.jpg");
+        URL other = new URL("https://other.bandwidth.test/1.jpg");
+        Bandwidth.setLimit("capped.bandwidth.test", 100);
+        Assertions.assertTrue(Bandwidth.isLimited(capped));
+        Assertions.assertFalse(Bandwidth.isLimited(other));
+        // A tenth of a second at 100 KB/s
+        Assertions.assertEquals(10240, Bandwidth.readSize(capped, 256 * 1024));
+        Assertions.assertEquals(256 * 1024, Bandwidth.readSize(other, 256 * 1024));
+
+        Bandwidth.setLimit("capped.bandwidth.test", 0);
+        Assertions.assertFalse(Bandwidth.isLimited(capped));
+    }
+
+    @Test
+    public void testConsumeWaitsForTokens() throws MalformedURLException, InterruptedException {
+        URL url = new URL("https://pace.bandwidth.test/1.jpg");
+        Bandwidth.setLimit("pace.bandwidth.test", 100);
+        long start = System.nanoTime();
+        // 50 KB at 100 KB/s, from an empty bucket
+        Bandwidth.consume(url, 50 * 1024);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        Assertions.assertTrue(elapsedMillis >= 400, "Waited " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void testUnlimitedDoesNotWait() throws MalformedURLException, InterruptedException {
+        URL url = new URL("https://free.bandwidth.test/1.jpg");
+        Assertions.assertFalse(Bandwidth.isLimited(url));
+        long start = System.nanoTime();
+        Bandwidth.consume(url, 10 * 1024 * 1024);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        Assertions.assertTrue(elapsedMillis < 100, "Waited " + elapsedMillis + "ms");
+    }
+}
@@ -0,0 +1,71 @@
+package com.rarchives.ripme.tst;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import com.rarchives.ripme.utils.CookieStore;
+import com.rarchives.ripme.utils.Utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CookieStoreTest {
+
+    private boolean persist;
+
+    @BeforeEach
+    public void setUp() {
+        // keep the user's cookies.json out of this
+        persist = Utils.getConfigBoolean("cookies.persist", true);
+        Utils.setConfigBoolean("cookies.persist", false);
+        CookieStore.clear("cookiestore.test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Utils.setConfigBoolean("cookies.persist", persist);
+    }
+
+    @Test
+    public void testCapture() throws MalformedURLException {
+        CookieStore.capture(new URL("https://login.cookiestore.test/"), Arrays.asList(
+                "session=abc; Domain=.cookiestore.test; Path=/",
+                "other=1; Domain=unrelated.test"));
+        Map<String, String> cookies = CookieStore.cookiesFor(new URL("https://www.cookiestore.test/page"));
+        Assertions.assertEquals("abc", cookies.get("session"));
+        Assertions.assertFalse(cookies.containsKey("other"));
+
+        // Max-Age=0 deletes the cookie
+        CookieStore.capture(new URL("https://cookiestore.test/"), Collections.singletonList("session=; Max-Age=0"));
+        Assertions.assertFalse(CookieStore.cookiesFor(new URL("https://cookiestore.test/")).containsKey("session"));
+    }
+
+    @Test
+    public void testConfigCookies() throws MalformedURLException {
+        Utils.setConfigString("cookies.cookiestore.test", "session=fromconfig; a=b");
+        CookieStore.capture(new URL("https://cookiestore.test/"), Collections.singletonList("session=captured"));
+        Map<String, String> cookies = CookieStore.cookiesFor(new URL("https://old.cookiestore.test/"));
+        Assertions.assertEquals("fromconfig", cookies.get("session"));
+        Assertions.assertEquals("b", cookies.get("a"));
+        Utils.setConfigString("cookies.cookiestore.test", "");
+    }
+
+    @Test
+    public void testPublicSuffixCookiesAreIgnored() throws MalformedURLException {
+        CookieStore.capture(new URL("https://shop.cookiestore.co.uk/"), Arrays.asList(
+                "tld=1; Domain=.uk",
+                "suffix=1; Domain=.co.uk",
+                "site=1; Domain=.cookiestore.co.uk"));
+        Map<String, String> cookies = CookieStore.cookiesFor(new URL("https://www.cookiestore.co.uk/"));
+        Assertions.assertEquals("1", cookies.get("site"));
+        Assertions.assertFalse(cookies.containsKey("tld"));
+        Assertions.assertFalse(cookies.containsKey("suffix"));
+        Assertions.assertFalse(CookieStore.cookiesFor(new URL("https://elsewhere.co.uk/")).containsKey("suffix"));
+        CookieStore.clear("cookiestore.co.uk");
+    }
+}
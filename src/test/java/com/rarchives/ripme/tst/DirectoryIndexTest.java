@@ -0,0 +1,58 @@
+package com.rarchives.ripme.tst;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.rarchives.ripme.utils.DirectoryIndex;
+import com.rarchives.ripme.utils.Utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectoryIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testExists() throws IOException {
+        Files.createFile(dir.resolve("001_image.jpg"));
+        Assertions.assertTrue(DirectoryIndex.exists(dir.resolve("001_image.jpg")));
+        Assertions.assertFalse(DirectoryIndex.exists(dir.resolve("002_image.jpg")));
+
+        // files written after the scan are only seen when ripme reports them
+        Files.createFile(dir.resolve("002_image.jpg"));
+        Assertions.assertFalse(DirectoryIndex.exists(dir.resolve("002_image.jpg")));
+        DirectoryIndex.fileAdded(dir.resolve("002_image.jpg"));
+        Assertions.assertTrue(DirectoryIndex.exists(dir.resolve("002_image.jpg")));
+
+        DirectoryIndex.fileRemoved(dir.resolve("001_image.jpg"));
+        Assertions.assertFalse(DirectoryIndex.exists(dir.resolve("001_image.jpg")));
+    }
+
+    @Test
+    public void testFuzzyExists() throws IOException {
+        Files.createFile(dir.resolve("001_image.png"));
+        Assertions.assertTrue(Utils.fuzzyExists(dir, "001_image"));
+        Assertions.assertTrue(Utils.fuzzyExists(dir, "001_image.png"));
+        Assertions.assertFalse(Utils.fuzzyExists(dir, "001_imag"));
+    }
+
+    @Test
+    public void testFindIgnoreCase() throws IOException {
+        Files.createDirectory(dir.resolve("imgur_AbCdE"));
+        DirectoryIndex.invalidate(dir);
+        Assertions.assertEquals("imgur_AbCdE", DirectoryIndex.of(dir).findIgnoreCase("imgur_abcde"));
+        Assertions.assertNull(DirectoryIndex.of(dir).findIgnoreCase("imgur_fghij"));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        Assertions.assertFalse(DirectoryIndex.exists(dir.resolve("album")));
+        Files.createDirectory(dir.resolve("album"));
+        DirectoryIndex.invalidate(dir);
+        Assertions.assertTrue(DirectoryIndex.exists(dir.resolve("album")));
+    }
+}
@@ -0,0 +1,51 @@
+package com.rarchives.ripme.tst;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import com.rarchives.ripme.utils.HostConcurrency;
+import com.rarchives.ripme.utils.Utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HostConcurrencyTest {
+
+    private String persist;
+    private String min;
+
+    @BeforeEach
+    public void setUp() {
+        persist = Utils.getConfigString("download.concurrency.persist", null);
+        min = Utils.getConfigString("download.concurrency.min", null);
+        Utils.setConfigBoolean("download.concurrency.persist", false);
+        Utils.setConfigInteger("download.concurrency.min", 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        restore("download.concurrency.persist", persist);
+        restore("download.concurrency.min", min);
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            Utils.clearConfig(key);
+        } else {
+            Utils.setConfigString(key, value);
+        }
+    }
+
+    @Test
+    public void testCongestionHalvesLimit() throws MalformedURLException {
+        URL url = new URL("https://aimd.concurrency.test/1.jpg");
+        int start = HostConcurrency.getLimit(url);
+        HostConcurrency.congested(url);
+        Assertions.assertEquals(Math.max(1, start / 2), HostConcurrency.getLimit(url));
+        // The downloads already in flight report the same trouble, only the first one counts
+        HostConcurrency.congested(url);
+        Assertions.assertEquals(Math.max(1, start / 2), HostConcurrency.getLimit(url));
+    }
+}
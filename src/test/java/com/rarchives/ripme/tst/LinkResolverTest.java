@@ -0,0 +1,23 @@
+package com.rarchives.ripme.tst;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import com.rarchives.ripme.utils.LinkResolver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LinkResolverTest {
+
+    @Test
+    public void testResolveDirectLink() throws MalformedURLException {
+        URL url = new URL("https://i.example.com/image/abc.jpg");
+        List<URL> files = LinkResolver.get(url);
+        Assertions.assertEquals(Collections.singletonList(url), files);
+        // second lookup is answered from the cache
+        Assertions.assertSame(files, LinkResolver.resolve(url).join());
+    }
+}
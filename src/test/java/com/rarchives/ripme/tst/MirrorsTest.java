@@ -0,0 +1,39 @@
+package com.rarchives.ripme.tst;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+
+import com.rarchives.ripme.utils.Mirrors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MirrorsTest {
+
+    @Test
+    public void testFastestMirrorFirst() throws MalformedURLException {
+        Mirrors.addHostGroup("a.mirrors.test", "b.mirrors.test");
+        URL a = new URL("https://a.mirrors.test/x/1.jpg");
+        URL b = new URL("https://b.mirrors.test/x/1.jpg");
+        Assertions.assertTrue(Mirrors.hasAlternates(a));
+        Assertions.assertEquals(Arrays.asList(a, b), Mirrors.candidatesFor(a));
+
+        for (int i = 0; i < 10; i++) {
+            Mirrors.recordLatency(a, 900);
+            Mirrors.recordLatency(b, 100);
+        }
+        Assertions.assertEquals(Arrays.asList(b, a), Mirrors.candidatesFor(a));
+    }
+
+    @Test
+    public void testHedgeDelayFollowsLatency() throws MalformedURLException {
+        URL url = new URL("https://latency.mirrors.test/1.jpg");
+        for (int i = 1; i <= 20; i++) {
+            Mirrors.recordLatency(url, i * 10);
+        }
+        // 95th percentile of 10, 20, ... 200
+        Assertions.assertEquals(190, Mirrors.hedgeDelay(url));
+        Assertions.assertFalse(Mirrors.hasAlternates(url));
+    }
+}
@@ -0,0 +1,70 @@
+package com.rarchives.ripme.tst;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.rarchives.ripme.utils.ProxyRouter;
+import com.rarchives.ripme.utils.Utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProxyRouterTest {
+
+    private static final String[] KEYS = {
+            "proxy.pool.routertest", "proxy.route.pool.router.test", "proxy.route.direct.router.test"};
+
+    private final Map<String, String> previous = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (String key : KEYS) {
+            previous.put(key, Utils.getConfigString(key, null));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (String key : KEYS) {
+            if (previous.get(key) == null) {
+                Utils.clearConfig(key);
+            } else {
+                Utils.setConfigString(key, previous.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void testRoundRobinAndFailover() throws IOException {
+        Utils.setConfigString("proxy.pool.routertest", "http://10.0.0.1:3128, socks://10.0.0.2");
+        Utils.setConfigString("proxy.route.pool.router.test", "routertest");
+        URL url = new URL("https://img.pool.router.test/1.jpg");
+
+        Proxy first = ProxyRouter.select(url);
+        Proxy second = ProxyRouter.select(url);
+        Assertions.assertEquals(Proxy.Type.HTTP, first.type());
+        Assertions.assertEquals(3128, ((InetSocketAddress) first.address()).getPort());
+        Assertions.assertEquals(Proxy.Type.SOCKS, second.type());
+        Assertions.assertEquals(1080, ((InetSocketAddress) second.address()).getPort());
+
+        // Take the first proxy out, everything goes through the second one
+        for (int i = 0; i < 3; i++) {
+            ProxyRouter.failed(url, first);
+        }
+        Assertions.assertEquals(second, ProxyRouter.select(url));
+        Assertions.assertEquals(second, ProxyRouter.select(url));
+    }
+
+    @Test
+    public void testDirectRoute() throws IOException {
+        Utils.setConfigString("proxy.route.direct.router.test", "direct");
+        Assertions.assertEquals(Proxy.NO_PROXY, ProxyRouter.select(new URL("https://direct.router.test/")));
+        Assertions.assertTrue(ProxyRouter.isRouted(new URL("https://direct.router.test/")));
+    }
+}
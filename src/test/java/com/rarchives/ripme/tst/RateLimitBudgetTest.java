@@ -0,0 +1,38 @@
+package com.rarchives.ripme.tst;
+
+import java.io.IOException;
+
+import com.rarchives.ripme.utils.RateLimitBudget;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RateLimitBudgetTest {
+
+    @Test
+    public void testBudgetIsCountedOff() throws IOException {
+        String api = "budget.test/counted";
+        Assertions.assertEquals(-1, RateLimitBudget.getRemaining(api));
+        long reset = System.currentTimeMillis() + 60000;
+        RateLimitBudget.update(api, 3, reset);
+        RateLimitBudget.acquire(api);
+        RateLimitBudget.acquire(api);
+        Assertions.assertEquals(1, RateLimitBudget.getRemaining(api));
+        // A response sent before those two requests doesn't give them back
+        RateLimitBudget.update(api, 2, reset);
+        Assertions.assertEquals(1, RateLimitBudget.getRemaining(api));
+        // A new window does
+        RateLimitBudget.update(api, 100, reset + 60000);
+        Assertions.assertEquals(100, RateLimitBudget.getRemaining(api));
+    }
+
+    @Test
+    public void testSpentBudgetWaitsForReset() throws IOException {
+        String api = "budget.test/spent";
+        RateLimitBudget.update(api, 0, System.currentTimeMillis() - 500);
+        long start = System.nanoTime();
+        RateLimitBudget.acquire(api);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        Assertions.assertTrue(elapsedMillis >= 400, "Waited " + elapsedMillis + "ms");
+    }
+}
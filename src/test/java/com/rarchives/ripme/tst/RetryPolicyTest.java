@@ -0,0 +1,47 @@
+package com.rarchives.ripme.tst;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+
+import com.rarchives.ripme.utils.RetryPolicy;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testRetryableErrors() {
+        Assertions.assertTrue(RetryPolicy.isRetryable(429));
+        Assertions.assertTrue(RetryPolicy.isRetryable(503));
+        Assertions.assertFalse(RetryPolicy.isRetryable(404));
+        Assertions.assertFalse(RetryPolicy.isRetryable(501));
+        Assertions.assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException()));
+        Assertions.assertFalse(RetryPolicy.isRetryable(new UnknownHostException()));
+    }
+
+    @Test
+    public void testRetryAfter() {
+        Assertions.assertEquals(120000, RetryPolicy.retryAfterMillis("120"));
+        Assertions.assertEquals(0, RetryPolicy.retryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"));
+        Assertions.assertEquals(0, RetryPolicy.retryAfterMillis("soon"));
+        Assertions.assertEquals(0, RetryPolicy.retryAfterMillis(null));
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailures() throws MalformedURLException, IOException {
+        URL url = new URL("https://circuit.retry.test/1.jpg");
+        for (int i = 0; i < 4; i++) {
+            RetryPolicy.failed(url);
+        }
+        Assertions.assertFalse(RetryPolicy.isPaused(url));
+        RetryPolicy.failed(url);
+        Assertions.assertTrue(RetryPolicy.isPaused(url));
+        RetryPolicy.succeeded(url);
+        Assertions.assertFalse(RetryPolicy.isPaused(url));
+        RetryPolicy.acquire(url);
+    }
+}